@@ -0,0 +1,74 @@
+package pentago_swap;
+
+import pentago_swap.PentagoBoardState.Piece;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * The win check PentagoBoardState used before it had line tables, kept as the baseline of WinCheckBenchmark. It walks
+ * each line one new PentagoCoord at a time and finds the edge of the board by catching the IllegalArgumentException
+ * thrown when a coordinate walks off it.
+ */
+final class LegacyWinCheck {
+    private static final int BOARD_SIZE = PentagoBoardState.BOARD_SIZE;
+
+    private static final UnaryOperator<PentagoCoord> getNextHorizontal = c -> new PentagoCoord(c.getX(), c.getY()+1);
+    private static final UnaryOperator<PentagoCoord> getNextVertical = c -> new PentagoCoord(c.getX()+1, c.getY());
+    private static final UnaryOperator<PentagoCoord> getNextDiagRight = c -> new PentagoCoord(c.getX()+1, c.getY()+1);
+    private static final UnaryOperator<PentagoCoord> getNextDiagLeft = c -> new PentagoCoord(c.getX()+1, c.getY()-1);
+
+    private LegacyWinCheck() {}
+
+    static boolean hasWon(Piece[][] board, int player) {
+        return checkVerticalWin(board, player) || checkHorizontalWin(board, player)
+                || checkDiagRightWin(board, player) || checkDiagLeftWin(board, player);
+    }
+
+    private static boolean checkVerticalWin(Piece[][] board, int player) {
+        return checkWinRange(board, player, 0, 2, 0, BOARD_SIZE, getNextVertical);
+    }
+
+    private static boolean checkHorizontalWin(Piece[][] board, int player) {
+        return checkWinRange(board, player, 0, BOARD_SIZE, 0, 2, getNextHorizontal);
+    }
+
+    private static boolean checkDiagRightWin(Piece[][] board, int player) {
+        return checkWinRange(board, player, 0, 2, 0, 2, getNextDiagRight);
+    }
+
+    private static boolean checkDiagLeftWin(Piece[][] board, int player) {
+        return checkWinRange(board, player, 0 ,2, BOARD_SIZE - 2, BOARD_SIZE, getNextDiagLeft);
+    }
+
+    private static boolean checkWinRange(Piece[][] board, int player, int xStart, int xEnd, int yStart, int yEnd,
+                                         UnaryOperator<PentagoCoord> direction) {
+        boolean win = false;
+        for (int i = xStart; i < xEnd; i++) {
+            for (int j = yStart; j < yEnd; j++) {
+                win |= checkWin(board, player, new PentagoCoord(i, j), direction);
+                if (win) { return true; }
+            }
+        }
+        return false;
+    }
+
+    private static boolean checkWin(Piece[][] board, int player, PentagoCoord start,
+                                    UnaryOperator<PentagoCoord> direction) {
+        int winCounter = 0;
+        Piece currColour = player == 0 ? Piece.WHITE : Piece.BLACK;
+        PentagoCoord current = start;
+        while(true) {
+            try {
+                if (currColour == board[current.getX()][current.getY()]) {
+                    winCounter++;
+                    current = direction.apply(current);
+                } else {
+                    break;
+                }
+            } catch (IllegalArgumentException e) { //We have run off the board
+                break;
+            }
+        }
+        return winCounter >= 5;
+    }
+}
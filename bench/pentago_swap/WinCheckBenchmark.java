@@ -0,0 +1,52 @@
+package pentago_swap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import pentago_swap.PentagoBoardState.Piece;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Cost of the check for five in a row that PentagoBoardState runs for both players after every move: the line
+ * tables it uses now against the coordinate walk it used before (LegacyWinCheck). Positions are reached by seeded
+ * random play and nobody has won in them, so every line is checked.
+ */
+@State(Scope.Thread)
+public class WinCheckBenchmark {
+
+    private static final long SEED = 424;
+
+    // Number of moves played in the position
+    @Param({"8", "16", "24"})
+    public int turnNumber;
+
+    private PentagoBoardState state;
+    private Piece[][] board;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(SEED + turnNumber);
+        do {
+            state = (PentagoBoardState) new PentagoBoard().getBoardState();
+            for (int i = 0; i < turnNumber && !state.gameOver(); i++) {
+                ArrayList<PentagoMove> moves = state.getAllLegalMoves();
+                state.processMove(moves.get(random.nextInt(moves.size())));
+            }
+        } while (state.gameOver());
+        board = state.getBoard();
+    }
+
+    @Benchmark
+    public boolean lineTables() {
+        return state.hasFiveInARow(PentagoBoardState.WHITE) | state.hasFiveInARow(PentagoBoardState.BLACK);
+    }
+
+    @Benchmark
+    public boolean legacy() {
+        return LegacyWinCheck.hasWon(board, PentagoBoardState.WHITE) | LegacyWinCheck.hasWon(board, PentagoBoardState.BLACK);
+    }
+}
@@ -0,0 +1,72 @@
+package student_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static pentago_swap.PentagoBoardState.BLACK;
+import static pentago_swap.PentagoBoardState.WHITE;
+import static student_player.PentagoBitBoard.MAX_MOVES;
+
+/**
+ * Throughput of the PentagoBitBoard operations used by every MCTS iteration, measured on each reference position
+ */
+@State(Scope.Thread)
+public class BitBoardBenchmark {
+
+	@Param({"0", "8", "16", "24"})
+	public int turnNumber;
+
+	private PentagoBitBoard state;
+	private long[] moves;
+	private int numMoves;
+	private int nextMove;
+	private long whitePieces;
+	private long blackPieces;
+	private RandomSource random;
+
+	@Setup
+	public void setup() {
+		this.state = ReferencePositions.at(this.turnNumber);
+		this.moves = new long[MAX_MOVES];
+		this.random = new Xoshiro256(this.turnNumber);
+		this.numMoves = this.state.getAllLegalNonSymmetricMoves(this.moves);
+		this.whitePieces = this.state.getPieces(WHITE);
+		this.blackPieces = this.state.getPieces(BLACK);
+	}
+
+	/**
+	 * Applies and undoes each legal move in turn, the state is the same after every call
+	 */
+	@Benchmark
+	public long processAndUndoMove() {
+		long move = this.moves[this.nextMove];
+		this.nextMove = this.nextMove + 1 == this.numMoves ? 0 : this.nextMove + 1;
+		this.state.processMove(move);
+		byte winner = this.state.getWinner();
+		this.state.undoMove(move);
+		return winner;
+	}
+
+	@Benchmark
+	public long getRandomMove() {
+		return this.state.getRandomMove(this.random);
+	}
+
+	@Benchmark
+	public int getAllLegalNonSymmetricMoves() {
+		return this.state.getAllLegalNonSymmetricMoves(this.moves);
+	}
+
+	@Benchmark
+	public boolean checkWin() {
+		return PentagoBitBoard.hasFiveInARow(this.whitePieces) | PentagoBitBoard.hasFiveInARow(this.blackPieces);
+	}
+
+	@Benchmark
+	public double evaluate() {
+		return Evaluator.winProbability(this.state);
+	}
+}
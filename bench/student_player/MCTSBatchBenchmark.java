@@ -0,0 +1,55 @@
+package student_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of whole MCTS iterations simulating several playouts per leaf. Batched playouts are only used with the
+ * random policy and rollouts played to the end, so unlike MCTSBenchmark the rollout settings aren't varied here.
+ */
+@State(Scope.Thread)
+public class MCTSBatchBenchmark {
+
+	private static final int ITERATIONS = 1 << 12;
+
+	@Param({"0", "8", "16", "24"})
+	public int turnNumber;
+
+	@Param({"8"})
+	public int playoutsPerLeaf;
+
+	// Progressive widening factor, 0 expands every child at once
+	@Param({"0", "2"})
+	public double widening;
+
+	// RAVE equivalence parameter, 0 turns RAVE off
+	@Param({"0", "1000"})
+	public double rave;
+
+	private PentagoBitBoard rootState;
+	private UCTTree tree;
+	private MCTSWorker worker;
+
+	@Setup
+	public void setup() {
+		this.rootState = ReferencePositions.at(this.turnNumber);
+		this.tree = new UCTTree(1 << 20, null, this.rave);
+		this.worker = new MCTSWorker(new Xoshiro256(this.turnNumber), this.playoutsPerLeaf, 0, this.widening);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ITERATIONS)
+	public int search() {
+		this.tree.reset();
+		this.worker.prepare(this.tree, this.rootState, Long.MAX_VALUE, RolloutPolicy.RANDOM);
+		this.worker.expandNode(UCTTree.ROOT, this.rootState);
+		for(int i = 0; i < ITERATIONS; i++) {
+			this.worker.iterate();
+		}
+		return this.tree.getNumSims(UCTTree.ROOT);
+	}
+}
@@ -0,0 +1,62 @@
+package student_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of whole MCTS iterations (descent, expansion, playout and backpropagation). Each invocation grows a new
+ * tree from a reference position for a fixed number of iterations, so the score is in iterations per second and
+ * doesn't depend on the time limit of the player. Playouts are simulated one per leaf, MCTSBatchBenchmark covers the
+ * batched playouts.
+ */
+@State(Scope.Thread)
+public class MCTSBenchmark {
+
+	private static final int ITERATIONS = 1 << 12;
+
+	@Param({"0", "8", "16", "24"})
+	public int turnNumber;
+
+	// Name of a RolloutPolicy, which isn't visible to the generated benchmark code
+	@Param({"RANDOM", "INFORMED"})
+	public String policy;
+
+	// Moves after which rollouts are cut off and evaluated, 0 plays them to the end
+	@Param({"0", "8"})
+	public int rolloutPlies;
+
+	// Progressive widening factor, 0 expands every child at once
+	@Param({"0", "2"})
+	public double widening;
+
+	// RAVE equivalence parameter, 0 turns RAVE off
+	@Param({"0", "1000"})
+	public double rave;
+
+	private PentagoBitBoard rootState;
+	private UCTTree tree;
+	private MCTSWorker worker;
+
+	@Setup
+	public void setup() {
+		this.rootState = ReferencePositions.at(this.turnNumber);
+		this.tree = new UCTTree(1 << 20, null, this.rave);
+		this.worker = new MCTSWorker(new Xoshiro256(this.turnNumber), 1, this.rolloutPlies, this.widening);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(ITERATIONS)
+	public int search() {
+		this.tree.reset();
+		this.worker.prepare(this.tree, this.rootState, Long.MAX_VALUE, RolloutPolicy.valueOf(this.policy));
+		this.worker.expandNode(UCTTree.ROOT, this.rootState);
+		for(int i = 0; i < ITERATIONS; i++) {
+			this.worker.iterate();
+		}
+		return this.tree.getNumSims(UCTTree.ROOT);
+	}
+}
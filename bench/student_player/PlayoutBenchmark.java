@@ -0,0 +1,61 @@
+package student_player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of complete random playouts (the default policy of MCTS) from each reference position, one at a time and
+ * in batches
+ */
+@State(Scope.Thread)
+public class PlayoutBenchmark {
+
+	private static final int BATCH_SIZE = 16;
+
+	@Param({"0", "8", "16", "24"})
+	public int turnNumber;
+
+	private PentagoBitBoard rootState;
+	private PentagoBitBoard rolloutState;
+	private RandomSource random;
+	private BatchPlayout batch;
+
+	@Setup
+	public void setup() {
+		this.rootState = ReferencePositions.at(this.turnNumber);
+		this.rolloutState = (PentagoBitBoard) this.rootState.clone();
+		this.random = new Xoshiro256(this.turnNumber);
+		this.batch = new BatchPlayout(BATCH_SIZE);
+	}
+
+	@Benchmark
+	public byte randomPlayout() {
+		PentagoBitBoard state = this.rolloutState;
+		state.copyFrom(this.rootState);
+		while(!state.gameOver()) {
+			state.processMove(state.getRandomMove(this.random));
+		}
+		return state.getWinner();
+	}
+
+	@Benchmark
+	public byte informedPlayout() {
+		PentagoBitBoard state = this.rolloutState;
+		state.copyFrom(this.rootState);
+		while(!state.gameOver()) {
+			state.processMove(state.getInformedMove(this.random));
+		}
+		return state.getWinner();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH_SIZE)
+	public int batchPlayout() {
+		this.batch.simulate(this.rootState, this.random);
+		return this.batch.getDraws();
+	}
+}
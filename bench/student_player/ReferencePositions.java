@@ -0,0 +1,42 @@
+package student_player;
+
+import pentago_swap.PentagoBoard;
+import pentago_swap.PentagoBoardState;
+
+import java.util.Random;
+
+import static student_player.PentagoBitBoard.MAX_MOVES;
+import static student_player.PentagoBitBoard.SWAP_BITS;
+
+/**
+ * The positions every benchmark starts from. They are reached by seeded random play so every run measures the same
+ * boards: the empty board, and positions early, in the middle and late in the game where nobody has won yet.
+ */
+final class ReferencePositions {
+
+	private static final long SEED = 424;
+
+	private ReferencePositions() {}
+
+	/**
+	 * @param turnNumber number of placements made in the position
+	 * @return a new copy of the reference position at turnNumber
+	 */
+	static PentagoBitBoard at(int turnNumber) {
+		Random random = new Random(SEED + turnNumber);
+		long[] moves = new long[MAX_MOVES];
+
+		// Replay until a game lasts long enough, the first seeds almost always do
+		while(true) {
+			PentagoBitBoard state = new PentagoBitBoard((PentagoBoardState) new PentagoBoard().getBoardState());
+			while(state.getTurnNumber() < turnNumber && !state.gameOver()) {
+				long[] pieces = state.getPieces();
+				int numMoves = state.getAllLegalMoves(~(pieces[0] | pieces[1]), SWAP_BITS, moves, 0);
+				state.processMove(moves[random.nextInt(numMoves)]);
+			}
+			if(!state.gameOver()) {
+				return state;
+			}
+		}
+	}
+}
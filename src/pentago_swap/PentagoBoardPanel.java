@@ -199,7 +199,7 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
                     int xPos = j * SQUARE_SIZE + SQUARE_SIZE / 2;
                     int yPos = i * SQUARE_SIZE + SQUARE_SIZE / 2;
                     if(clickInSquare(clickX, clickY, xPos, yPos)) {
-                        dest = new PentagoCoord(i, j);
+                        dest = PentagoCoord.valueOf(i, j);
                         break outer;
                     }
                 }
@@ -208,8 +208,8 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
         if (dest == null) { return; }
         if (pbs.isPlaceLegal(dest)) {
             isPieceSelected = true;
-            pieceSelection = new PentagoCoord(dest.getX(), dest.getY());
-            pbs.getBoard()[dest.getX()][dest.getY()] = pbs.getTurnPlayer() == PentagoBoardState.WHITE ? Piece.WHITE : Piece.BLACK;
+            pieceSelection = dest;
+            pbs.showPlacement(dest);
             humanRepaint();
             System.out.println("PIECE PLACED");
         }
@@ -261,7 +261,7 @@ public class PentagoBoardPanel extends BoardPanel implements MouseListener, Mous
                 if (p != Piece.EMPTY) {
                     int xPos = j * SQUARE_SIZE + SQUARE_SIZE / 2;
                     int yPos = i * SQUARE_SIZE + SQUARE_SIZE / 2;
-                    GUIPiece gp = new GUIPiece(p, xPos, yPos, new PentagoCoord(i, j));
+                    GUIPiece gp = new GUIPiece(p, xPos, yPos, PentagoCoord.valueOf(i, j));
                     boardPieces.add(gp);
                 }
             }
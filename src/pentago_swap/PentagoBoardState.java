@@ -5,8 +5,6 @@ import boardgame.BoardState;
 import boardgame.Move;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.function.UnaryOperator;
 import java.util.Random;
 
 import java.util.Scanner;
@@ -38,51 +36,76 @@ public class PentagoBoardState extends BoardState {
         public String toString() { return name(); }
     }
 
-    private static final UnaryOperator<PentagoCoord> getNextHorizontal = c -> new PentagoCoord(c.getX(), c.getY()+1);
-    private static final UnaryOperator<PentagoCoord> getNextVertical = c -> new PentagoCoord(c.getX()+1, c.getY());
-    private static final UnaryOperator<PentagoCoord> getNextDiagRight = c -> new PentagoCoord(c.getX()+1, c.getY()+1);
-    private static final UnaryOperator<PentagoCoord> getNextDiagLeft = c -> new PentagoCoord(c.getX()+1, c.getY()-1);
+    /**
+     * Receives the legal moves of a state from forEachLegalMove(), packed as in PentagoMove.pack()
+     */
+    public interface MoveVisitor {
+        /**
+         * @param move a legal move
+         * @return true to go on to the next move, false to stop
+         */
+        boolean visit(int move);
+    }
+
+    private static final int WIN_LENGTH = 5;
     private static int FIRST_PLAYER = WHITE;
-    private static HashMap<Quadrant, Integer> quadToInt;
-    private static HashMap<Integer, Quadrant> intToQuad;
+    private static final Quadrant[] QUADRANTS = Quadrant.values();
+
+    private static final long BOARD_MASK = (1L << (BOARD_SIZE * BOARD_SIZE)) - 1;
+
+    // Every quadrant swap packed as in PentagoMove.pack(), in the order getAllLegalMoves() lists them
+    private static final int NUM_SWAPS = NUM_QUADS * (NUM_QUADS - 1) / 2;
+    private static final int[] SWAPS = new int[NUM_SWAPS];
+    static {
+        int swap = 0;
+        for (int k = 0; k < NUM_QUADS - 1; k++) {
+            for (int l = k+1; l < NUM_QUADS; l++) {
+                SWAPS[swap++] = PentagoMove.packSwap(k, l);
+            }
+        }
+    }
+
+    // Squares of the top left quadrant, and how far each quadrant is from it
+    private static final long QUAD_MASK = 0b111L | 0b111L << BOARD_SIZE | 0b111L << (2 * BOARD_SIZE);
+    private static final int[] QUAD_OFFSETS = {0, QUAD_SIZE, QUAD_SIZE * BOARD_SIZE, QUAD_SIZE * BOARD_SIZE + QUAD_SIZE};
+
+    // Every line of five squares on the board
+    private static final long[] WIN_LINES = new long[32];
     static {
-        quadToInt = new HashMap<>(4);
-        quadToInt.put(Quadrant.TL, 0);
-        quadToInt.put(Quadrant.TR, 1);
-        quadToInt.put(Quadrant.BL, 2);
-        quadToInt.put(Quadrant.BR, 3);
-        intToQuad = new HashMap<>(4);
-        intToQuad.put(0, Quadrant.TL);
-        intToQuad.put(1, Quadrant.TR);
-        intToQuad.put(2, Quadrant.BL);
-        intToQuad.put(3, Quadrant.BR);
-    }
-
-    private Piece[][] board;
-    private Piece[][][] quadrants;
+        int line = 0;
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j <= BOARD_SIZE - WIN_LENGTH; j++) {
+                WIN_LINES[line++] = lineMask(i, j, 0, 1); // Horizontal
+                WIN_LINES[line++] = lineMask(j, i, 1, 0); // Vertical
+            }
+        }
+        for (int i = 0; i <= BOARD_SIZE - WIN_LENGTH; i++) {
+            for (int j = 0; j <= BOARD_SIZE - WIN_LENGTH; j++) {
+                WIN_LINES[line++] = lineMask(i, j, 1, 1); // Diagonal going right
+                WIN_LINES[line++] = lineMask(i, BOARD_SIZE - 1 - j, 1, -1); // Diagonal going left
+            }
+        }
+    }
+
+    /**
+     * The pieces of each player (indexed by WHITE and BLACK) as bits, the square (x, y) is bit x * BOARD_SIZE + y
+     */
+    private long[] pieces;
     private int turnPlayer;
     private int turnNumber;
     private int winner;
+
+    // Seeded with 2019 the first time a random move is asked for, so each new or copied state picks the same moves
     private Random rand;
 
+    // Winner before each move processed since the state was created or copied into, for undoMove()
+    private int[] winnerHistory;
+    private int historySize;
+
     PentagoBoardState() {
         super();
-        this.board = new Piece[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            for (int j = 0; j < BOARD_SIZE; j++) {
-                this.board[i][j] = Piece.EMPTY;
-            }
-        }
-        this.quadrants = new Piece[NUM_QUADS][QUAD_SIZE][QUAD_SIZE];
-        for (int i = 0; i < NUM_QUADS; i++) {
-            for (int j = 0; j < QUAD_SIZE; j++) {
-                for (int k = 0; k < QUAD_SIZE; k++) {
-                    this.quadrants[i][j][k] = Piece.EMPTY;
-                }
-            }
-        }
+        this.pieces = new long[2];
 
-        rand = new Random(2019);
         winner = Board.NOBODY;
         turnPlayer = FIRST_PLAYER;
         turnNumber = 0;
@@ -91,24 +114,47 @@ public class PentagoBoardState extends BoardState {
     // For cloning
     private PentagoBoardState(PentagoBoardState pbs) {
         super();
-        this.board = new Piece[BOARD_SIZE][BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            System.arraycopy(pbs.board[i], 0, this.board[i], 0, BOARD_SIZE);
-        }
-        this.quadrants = new Piece[NUM_QUADS][QUAD_SIZE][QUAD_SIZE];
-        for (int i = 0; i < NUM_QUADS; i++) {
-            for (int j = 0; j < QUAD_SIZE; j++) {
-                System.arraycopy(pbs.quadrants[i][j], 0, this.quadrants[i][j], 0, QUAD_SIZE);
-            }
-        }
+        this.pieces = new long[2];
+        copyFrom(pbs);
+    }
 
-        rand = new Random(2019);
+    /**
+     * Makes this state a copy of another without allocating anything, like clone() but reusing this instance
+     * @param pbs the state to copy
+     */
+    public void copyFrom(PentagoBoardState pbs) {
+        this.pieces[WHITE] = pbs.pieces[WHITE];
+        this.pieces[BLACK] = pbs.pieces[BLACK];
         this.winner = pbs.winner;
         this.turnPlayer = pbs.turnPlayer;
         this.turnNumber = pbs.turnNumber;
+
+        // Like a clone the copy starts a new random sequence and has no moves to undo
+        this.rand = null;
+        this.historySize = 0;
     }
 
-    Piece[][] getBoard() { return this.board; }
+    /**
+     * @return a new array with the piece on each square, changing it doesn't change the state
+     */
+    Piece[][] getBoard() {
+        Piece[][] board = new Piece[BOARD_SIZE][BOARD_SIZE];
+        for (int i = 0; i < BOARD_SIZE; i++) {
+            for (int j = 0; j < BOARD_SIZE; j++) {
+                board[i][j] = pieceAt(i, j);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Puts a piece of the player to move on the board without playing a move, used by the GUI to show a placement
+     * before the swap is chosen
+     * @param c coordinate for the piece
+     */
+    void showPlacement(PentagoCoord c) {
+        pieces[turnPlayer] |= squareBit(c.getX(), c.getY());
+    }
 
     @Override
     public Object clone() {
@@ -128,7 +174,7 @@ public class PentagoBoardState extends BoardState {
     public int getTurnNumber() { return turnNumber; }
 
     @Override
-    public boolean isInitialized() { return board != null; }
+    public boolean isInitialized() { return pieces != null; }
 
     @Override
     public int firstPlayer() { return FIRST_PLAYER; }
@@ -137,15 +183,49 @@ public class PentagoBoardState extends BoardState {
 
     @Override
     public Move getRandomMove() {
-        ArrayList<PentagoMove> moves = getAllLegalMoves();
-        return moves.get(rand.nextInt(moves.size()));
+        return PentagoMove.valueOf(getRandomPackedMove());
+    }
+
+    /**
+     * Picks a random legal move without listing them. It draws the same number as getRandomMove() did when it picked
+     * from getAllLegalMoves(), and the number picks the same move: the empty square it falls on, in the order of the
+     * list, and then the swap.
+     * @return the move packed as in PentagoMove.pack()
+     */
+    public int getRandomPackedMove() {
+        long empty = ~(pieces[WHITE] | pieces[BLACK]) & BOARD_MASK;
+        if (rand == null) {
+            rand = new Random(2019);
+        }
+        int choice = rand.nextInt(Long.bitCount(empty) * NUM_SWAPS);
+        for (int i = choice / NUM_SWAPS; i > 0; i--) {
+            empty &= empty - 1;
+        }
+        int square = Long.numberOfTrailingZeros(empty);
+        return PentagoMove.packSquare(square / BOARD_SIZE, square % BOARD_SIZE, turnPlayer) | SWAPS[choice % NUM_SWAPS];
+    }
+
+    /**
+     * Visits every legal move in the order of getAllLegalMoves() without allocating anything
+     * @param visitor receives each move packed as in PentagoMove.pack()
+     * @return false if the visitor stopped before the last move
+     */
+    public boolean forEachLegalMove(MoveVisitor visitor) {
+        for (long empty = ~(pieces[WHITE] | pieces[BLACK]) & BOARD_MASK; empty != 0; empty &= empty - 1) {
+            int square = Long.numberOfTrailingZeros(empty);
+            int placement = PentagoMove.packSquare(square / BOARD_SIZE, square % BOARD_SIZE, turnPlayer);
+            for (int swap : SWAPS) {
+                if (!visitor.visit(placement | swap)) { return false; }
+            }
+        }
+        return true;
     }
 
     public Piece getPieceAt(int xPos, int yPos) {
         if (xPos < 0 || xPos >= BOARD_SIZE || yPos < 0 || yPos >= BOARD_SIZE) {
             throw new IllegalArgumentException("Out of range");
         }
-        return board[xPos][yPos];
+        return pieceAt(xPos, yPos);
     }
 
     public Piece getPieceAt(PentagoCoord coord) {
@@ -156,10 +236,10 @@ public class PentagoBoardState extends BoardState {
         ArrayList<PentagoMove> legalMoves = new ArrayList<>();
         for (int i = 0; i < BOARD_SIZE; i++) { //Iterate through positions on board
             for (int j = 0; j < BOARD_SIZE; j++) {
-                if (board[i][j] == Piece.EMPTY) {
+                if (isEmpty(i, j)) {
                     for (int k = 0; k < NUM_QUADS - 1; k++) { // Iterate through valid swaps
                         for (int l = k+1; l < NUM_QUADS; l++) {
-                            legalMoves.add(new PentagoMove(i, j, intToQuad.get(k), intToQuad.get(l), turnPlayer));
+                            legalMoves.add(PentagoMove.valueOf(PentagoMove.pack(i, j, QUADRANTS[k], QUADRANTS[l], turnPlayer)));
                         }
                     }
                 }
@@ -178,7 +258,7 @@ public class PentagoBoardState extends BoardState {
         PentagoCoord c = m.getMoveCoord();
         if (c.getX() >= BOARD_SIZE || c.getX() < 0 || c.getY() < 0 || c.getY() >= BOARD_SIZE) { return false; }
         if (turnPlayer != m.getPlayerID() || m.getPlayerID() == ILLEGAL) { return false; } //Check right player
-        return board[c.getX()][c.getY()] == Piece.EMPTY;
+        return isEmpty(c.getX(), c.getY());
     }
 
     /**
@@ -188,11 +268,15 @@ public class PentagoBoardState extends BoardState {
      */
     public boolean isPlaceLegal(PentagoCoord c) {
         if (c.getX() >= BOARD_SIZE || c.getX() < 0 || c.getY() < 0 || c.getY() >= BOARD_SIZE) { return false; }
-        return board[c.getX()][c.getY()] == Piece.EMPTY;
+        return isEmpty(c.getX(), c.getY());
     }
 
     public void processMove(PentagoMove m) throws IllegalArgumentException {
         if (!isLegal(m)) { throw new IllegalArgumentException("Invalid move. Move: " + m.toPrettyString()); }
+        if (winnerHistory == null) {
+            winnerHistory = new int[BOARD_SIZE * BOARD_SIZE]; // Every move fills a square
+        }
+        winnerHistory[historySize++] = winner;
         updateQuadrants(m);
         updateWinner();
         if (turnPlayer != FIRST_PLAYER) { turnNumber += 1; } // Update the turn number if needed
@@ -200,45 +284,54 @@ public class PentagoBoardState extends BoardState {
     }
 
     /**
-     * Updates the appropriate quandrant based on the location of the move m
-     * @param m: Pentago move
+     * Takes back the last move processed, so a search can play moves on one state without cloning it. The board, turn
+     * and winner go back to what they were before the move. Only moves processed since the state was created or copied
+     * into can be undone, a clone has none.
+     * @param m the last move processed on this state
+     * @throws IllegalArgumentException if there is no move to undo or m can't be the last move
      */
-    private void updateQuadrants(PentagoMove m) {
-        Piece turnPiece = turnPlayer == WHITE ? Piece.WHITE : Piece.BLACK;
-        int x = m.getMoveCoord().getX();
-        int y = m.getMoveCoord().getY();
-        boolean isLeftQuadMove = y / 3 == 0;
-        boolean isTopQuadMove = x / 3 == 0;
-        if (isLeftQuadMove && isTopQuadMove) { //Top left quadrant
-            quadrants[0][x][y] = turnPiece;
-        } else if (!isLeftQuadMove && isTopQuadMove) { //Top right quadrant
-            quadrants[1][x][y % QUAD_SIZE] = turnPiece;
-        } else if (isLeftQuadMove) { //Bottom left quadrant
-            quadrants[2][x % QUAD_SIZE][y] = turnPiece;
-        } else { //Bottom right quadrant
-            quadrants[3][x % QUAD_SIZE][y % QUAD_SIZE] = turnPiece;
+    public void undoMove(PentagoMove m) throws IllegalArgumentException {
+        int previousPlayer = 1 - turnPlayer;
+        PentagoCoord c = m.getMoveCoord();
+        if (historySize == 0 || m.getPlayerID() != previousPlayer) {
+            throw new IllegalArgumentException("Not the last move. Move: " + m.toPrettyString());
         }
 
-        //Swapping mechanism
-        int a = quadToInt.get(m.getASwap());
-        int b = quadToInt.get(m.getBSwap());
-        Piece[][] tmp = quadrants[a];
-        quadrants[a] = quadrants[b];
-        quadrants[b] = tmp;
+        // A swap undoes itself
+        swapQuadrants(m.getASwap(), m.getBSwap());
+        long bit = squareBit(c.getX(), c.getY());
+        if ((pieces[previousPlayer] & bit) == 0) {
+            swapQuadrants(m.getASwap(), m.getBSwap());
+            throw new IllegalArgumentException("Not the last move. Move: " + m.toPrettyString());
+        }
+        pieces[previousPlayer] &= ~bit;
 
-        buildBoardFromQuadrants();
+        turnPlayer = previousPlayer;
+        if (turnPlayer != FIRST_PLAYER) { turnNumber -= 1; }
+        winner = winnerHistory[--historySize];
     }
 
     /**
-     * Updates the board after the quadrants have changed.
+     * Places the piece of the move and swaps its quadrants
+     * @param m: Pentago move
      */
-    private void buildBoardFromQuadrants() {
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            int quadrantRow = i < 3 ? i : i - 3;
-            int leftQuad = i < 3 ? 0 : 2;
-            int rightQuad = i < 3 ? 1 : 3;
-            System.arraycopy(quadrants[leftQuad][quadrantRow], 0, board[i], 0, 3);
-            System.arraycopy(quadrants[rightQuad][quadrantRow], 0, board[i], 3, 3);
+    private void updateQuadrants(PentagoMove m) {
+        PentagoCoord c = m.getMoveCoord();
+        pieces[turnPlayer] |= squareBit(c.getX(), c.getY());
+        swapQuadrants(m.getASwap(), m.getBSwap());
+    }
+
+    private void swapQuadrants(Quadrant aSwap, Quadrant bSwap) {
+        //Swapping mechanism: the quadrant further down the board moves up by the distance between them and vice versa
+        int a = QUAD_OFFSETS[aSwap.ordinal()];
+        int b = QUAD_OFFSETS[bSwap.ordinal()];
+        int low = Math.min(a, b);
+        int distance = Math.abs(a - b);
+        long lowMask = QUAD_MASK << low;
+        long highMask = lowMask << distance;
+        for (int player = WHITE; player <= BLACK; player++) {
+            long p = pieces[player];
+            pieces[player] = (p & ~(lowMask | highMask)) | (p & lowMask) << distance | (p & highMask) >>> distance;
         }
     }
 
@@ -246,9 +339,9 @@ public class PentagoBoardState extends BoardState {
      * Checks if the game has ended, and changes the winner attribute if so.
      */
     private void updateWinner() {
-        boolean playerWin = checkVerticalWin(turnPlayer) || checkHorizontalWin(turnPlayer) || checkDiagRightWin(turnPlayer) || checkDiagLeftWin(turnPlayer);
+        boolean playerWin = hasFiveInARow(turnPlayer);
         int otherPlayer = 1 - turnPlayer;
-        boolean otherWin = checkVerticalWin(otherPlayer) || checkHorizontalWin(otherPlayer) || checkDiagRightWin(otherPlayer) || checkDiagLeftWin(otherPlayer);
+        boolean otherWin = hasFiveInARow(otherPlayer);
         if (playerWin) { // Current player has won
             winner = otherWin ? Board.DRAW : turnPlayer;
         } else if (otherWin) { // Player's move caused the opponent to win
@@ -263,50 +356,40 @@ public class PentagoBoardState extends BoardState {
         return ((turnNumber >= MAX_TURNS - 1) && turnPlayer == BLACK) || winner != Board.NOBODY;
     }
 
-    private boolean checkVerticalWin(int player) {
-        return checkWinRange(player, 0, 2, 0, BOARD_SIZE, getNextVertical);
-    }
-
-    private boolean checkHorizontalWin(int player) {
-        return checkWinRange(player, 0, BOARD_SIZE, 0, 2, getNextHorizontal);
+    /**
+     * Checks the lines of five against precomputed masks, so nothing is allocated and nothing is thrown
+     * @param player WHITE or BLACK
+     * @return true if all five squares of one of the lines hold the player's pieces
+     */
+    boolean hasFiveInARow(int player) {
+        long p = pieces[player];
+        if (Long.bitCount(p) < WIN_LENGTH) { return false; }
+        for (long line : WIN_LINES) {
+            if ((p & line) == line) { return true; }
+        }
+        return false;
     }
 
-    private boolean checkDiagRightWin(int player) {
-        return checkWinRange(player, 0, 2, 0, 2, getNextDiagRight);
+    private Piece pieceAt(int x, int y) {
+        long bit = squareBit(x, y);
+        if ((pieces[WHITE] & bit) != 0) { return Piece.WHITE; }
+        return (pieces[BLACK] & bit) != 0 ? Piece.BLACK : Piece.EMPTY;
     }
 
-    private boolean checkDiagLeftWin(int player) {
-        return checkWinRange(player, 0 ,2, BOARD_SIZE - 2, BOARD_SIZE, getNextDiagLeft);
+    private boolean isEmpty(int x, int y) {
+        return ((pieces[WHITE] | pieces[BLACK]) & squareBit(x, y)) == 0;
     }
 
-    private boolean checkWinRange(int player, int xStart, int xEnd, int yStart, int yEnd, UnaryOperator<PentagoCoord> direction) {
-        boolean win = false;
-        for (int i = xStart; i < xEnd; i++) {
-            for (int j = yStart; j < yEnd; j++) {
-                win |= checkWin(player, new PentagoCoord(i, j), direction);
-                if (win) { return true; }
-            }
-        }
-        return false;
+    private static long squareBit(int x, int y) {
+        return 1L << (x * BOARD_SIZE + y);
     }
 
-    private boolean checkWin(int player, PentagoCoord start, UnaryOperator<PentagoCoord> direction) {
-        int winCounter = 0;
-        Piece currColour = player == 0 ? Piece.WHITE : Piece.BLACK;
-        PentagoCoord current = start;
-        while(true) {
-            try {
-                if (currColour == this.board[current.getX()][current.getY()]) {
-                    winCounter++;
-                    current = direction.apply(current);
-                } else {
-                    break;
-                }
-            } catch (IllegalArgumentException e) { //We have run off the board
-                break;
-            }
+    private static long lineMask(int x, int y, int dx, int dy) {
+        long mask = 0;
+        for (int i = 0; i < WIN_LENGTH; i++) {
+            mask |= squareBit(x + i * dx, y + i * dy);
         }
-        return winCounter >= 5;
+        return mask;
     }
 
     public void printBoard() {
@@ -322,7 +405,7 @@ public class PentagoBoardState extends BoardState {
             boardString.append("|");
             for (int j = 0; j < BOARD_SIZE; j++) {
                 boardString.append(" ");
-                boardString.append(board[i][j].toString());
+                boardString.append(pieceAt(i, j).toString());
                 boardString.append(" |");
                 if (j == QUAD_SIZE - 1) {
                     boardString.append("|");
@@ -5,8 +5,18 @@ package pentago_swap;
  * @author mgrenander
  */
 public class PentagoCoord {
-    private int x;
-    private int y;
+    private static final int BOARD_SIZE = PentagoBoardState.BOARD_SIZE;
+
+    // Shared instance of every coordinate on the board, indexed by x * BOARD_SIZE + y
+    private static final PentagoCoord[] COORDS = new PentagoCoord[BOARD_SIZE * BOARD_SIZE];
+    static {
+        for (int i = 0; i < COORDS.length; i++) {
+            COORDS[i] = new PentagoCoord(i / BOARD_SIZE, i % BOARD_SIZE);
+        }
+    }
+
+    private final int x;
+    private final int y;
 
     public PentagoCoord(int x, int y) throws IllegalArgumentException {
         if (!isValidCoord(x, y)) {
@@ -17,10 +27,21 @@ public class PentagoCoord {
         this.y = y;
     }
 
+    /**
+     * @return the shared instance of the coordinate, coordinates can't change so it can be used anywhere
+     * @throws IllegalArgumentException if the coordinate is off the board
+     */
+    public static PentagoCoord valueOf(int x, int y) throws IllegalArgumentException {
+        if (!isValidCoord(x, y)) {
+            return new PentagoCoord(x, y); // Throws
+        }
+        return COORDS[x * BOARD_SIZE + y];
+    }
+
     public int getX() { return this.x; }
     public int getY() { return this.y; }
 
     private static boolean isValidCoord(int x, int y) {
-        return x < PentagoBoardState.BOARD_SIZE && y < PentagoBoardState.BOARD_SIZE && x >= 0 && y >= 0;
+        return x < BOARD_SIZE && y < BOARD_SIZE && x >= 0 && y >= 0;
     }
 }
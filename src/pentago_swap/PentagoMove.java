@@ -8,6 +8,19 @@ import pentago_swap.PentagoBoardState.Quadrant;
  * @author mgrenander
  */
 public class PentagoMove extends Move {
+    // Layout of a move packed into an int, from the lowest bit: x and y (3 bits each), the two swapped quadrants
+    // (2 bits each) and the player (1 bit)
+    private static final int COORD_BITS = 3;
+    private static final int QUAD_BITS = 2;
+    private static final int Y_SHIFT = COORD_BITS;
+    private static final int A_SHIFT = 2 * COORD_BITS;
+    private static final int B_SHIFT = A_SHIFT + QUAD_BITS;
+    private static final int PLAYER_SHIFT = B_SHIFT + QUAD_BITS;
+    private static final Quadrant[] QUADRANTS = Quadrant.values();
+
+    // Length of a move written by toTransportable() when the coordinates and player have one digit
+    private static final int TRANSPORTABLE_LENGTH = 11;
+
     private int playerId;
     private int xMove;
     private int yMove;
@@ -29,6 +42,17 @@ public class PentagoMove extends Move {
     }
 
     public PentagoMove(String formatString) {
+        int move = parsePacked(formatString);
+        if (move >= 0) {
+            this.xMove = getX(move);
+            this.yMove = getY(move);
+            this.aSwap = getASwap(move);
+            this.bSwap = getBSwap(move);
+            this.playerId = getPlayerID(move);
+            this.fromBoard = false;
+            return;
+        }
+
         String[] components = formatString.split(" ");
         try {
             this.xMove = Integer.parseInt(components[0]);
@@ -42,8 +66,76 @@ public class PentagoMove extends Move {
         }
     }
 
+    /**
+     * Reads the usual form of a move, "x y aSwap bSwap playerId" with one digit numbers, without splitting the string
+     * @return the packed move, or -1 if the string has another form or isn't a move on the board
+     */
+    private static int parsePacked(String formatString) {
+        if (formatString.length() != TRANSPORTABLE_LENGTH || formatString.charAt(1) != ' '
+                || formatString.charAt(3) != ' ' || formatString.charAt(6) != ' ' || formatString.charAt(9) != ' ') {
+            return -1;
+        }
+        int x = formatString.charAt(0) - '0';
+        int y = formatString.charAt(2) - '0';
+        int a = parseQuadrant(formatString.charAt(4), formatString.charAt(5));
+        int b = parseQuadrant(formatString.charAt(7), formatString.charAt(8));
+        int playerId = formatString.charAt(10) - '0';
+        if (x < 0 || x >= PentagoBoardState.BOARD_SIZE || y < 0 || y >= PentagoBoardState.BOARD_SIZE || a < 0 || b < 0
+                || (playerId != PentagoBoardState.WHITE && playerId != PentagoBoardState.BLACK)) {
+            return -1;
+        }
+        return packSquare(x, y, playerId) | packSwap(a, b);
+    }
+
+    /**
+     * @return the ordinal of the Quadrant named by the two characters, or -1 if they don't name one
+     */
+    private static int parseQuadrant(char vertical, char horizontal) {
+        int top = vertical == 'T' ? 0 : vertical == 'B' ? 2 : -1;
+        int left = horizontal == 'L' ? 0 : horizontal == 'R' ? 1 : -1;
+        return top < 0 || left < 0 ? -1 : top + left;
+    }
+
+    /**
+     * Packs a move into an int, so moves can be handled without allocating PentagoMove objects
+     * @return the packed move, read it back with valueOf() or the packed getters
+     */
+    public static int pack(int x, int y, Quadrant aSwap, Quadrant bSwap, int playerId) {
+        return packSquare(x, y, playerId) | packSwap(aSwap.ordinal(), bSwap.ordinal());
+    }
+
+    static int packSquare(int x, int y, int playerId) {
+        return x | y << Y_SHIFT | (playerId & 1) << PLAYER_SHIFT;
+    }
+
+    static int packSwap(int aSwap, int bSwap) {
+        return aSwap << A_SHIFT | bSwap << B_SHIFT;
+    }
+
+    public static int getX(int move) { return move & ((1 << COORD_BITS) - 1); }
+    public static int getY(int move) { return (move >>> Y_SHIFT) & ((1 << COORD_BITS) - 1); }
+    public static Quadrant getASwap(int move) { return QUADRANTS[(move >>> A_SHIFT) & ((1 << QUAD_BITS) - 1)]; }
+    public static Quadrant getBSwap(int move) { return QUADRANTS[(move >>> B_SHIFT) & ((1 << QUAD_BITS) - 1)]; }
+    public static int getPlayerID(int move) { return (move >>> PLAYER_SHIFT) & 1; }
+
+    /**
+     * Unpacks a move
+     * @param move a move packed by pack()
+     * @return a new PentagoMove
+     */
+    public static PentagoMove valueOf(int move) {
+        return new PentagoMove(getX(move), getY(move), getASwap(move), getBSwap(move), getPlayerID(move));
+    }
+
+    /**
+     * @return this move packed into an int, see pack()
+     */
+    public int toPacked() {
+        return pack(xMove, yMove, aSwap, bSwap, playerId);
+    }
+
     // Getters
-    public PentagoCoord getMoveCoord() { return new PentagoCoord(this.xMove, this.yMove); }
+    public PentagoCoord getMoveCoord() { return PentagoCoord.valueOf(this.xMove, this.yMove); }
     public Quadrant getASwap() { return this.aSwap; }
     public Quadrant getBSwap() { return this.bSwap; }
 
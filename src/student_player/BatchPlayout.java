@@ -0,0 +1,129 @@
+package student_player;
+
+import static pentago_swap.PentagoBoardState.BLACK;
+import static pentago_swap.PentagoBoardState.BOARD_SIZE;
+import static pentago_swap.PentagoBoardState.WHITE;
+import static student_player.PentagoBitBoard.BOARD_MASK;
+import static student_player.PentagoBitBoard.MAX_TURNS;
+import static student_player.PentagoBitBoard.SWAP_BITS;
+import static student_player.PentagoBitBoard.hasFiveInARow;
+import static student_player.PentagoBitBoard.selectBit;
+import static student_player.PentagoBitBoard.swapQuadrants;
+
+/**
+ * Plays a batch of random playouts from the same state in lockstep. The games are kept in flat arrays of pieces and
+ * advanced together one ply at a time. Since every game in the batch has made the same number of moves, the player to
+ * move and the number of empty squares are shared, which leaves short branch-free loops over the arrays. A game that
+ * ends is counted and replaced by the last active game so the loops only ever cover active games.
+ */
+final class BatchPlayout {
+
+	// The 4 swap bits of each swap, the same order as SWAP_BITS
+	private static final int[] SWAPS = new int[SWAP_BITS.length];
+
+	static {
+		for(int i = 0; i < SWAP_BITS.length; i++) {
+			SWAPS[i] = (int) (SWAP_BITS[i] >>> 36);
+		}
+	}
+
+	private final long[] white;
+	private final long[] black;
+
+	// Results of the last batch
+	private final int[] wins = new int[2];
+	private int draws;
+
+	/**
+	 * @param batchSize number of games played by each call to simulate()
+	 */
+	BatchPlayout(int batchSize) {
+		this.white = new long[batchSize];
+		this.black = new long[batchSize];
+	}
+
+	/**
+	 * Plays every game of the batch from the state to the end, see getWins() and getDraws() for the results
+	 * @param state the state to simulate from, it is not modified
+	 * @param random the search thread's random number generator
+	 */
+	void simulate(PentagoBitBoard state, RandomSource random) {
+		this.wins[WHITE] = 0;
+		this.wins[BLACK] = 0;
+		this.draws = 0;
+
+		int active = this.white.length;
+		long startWhite = state.getPieces(WHITE);
+		long startBlack = state.getPieces(BLACK);
+		for(int i = 0; i < active; i++) {
+			this.white[i] = startWhite;
+			this.black[i] = startBlack;
+		}
+
+		int player = state.getTurnPlayer();
+		int turnNumber = state.getTurnNumber();
+		while(active > 0) {
+
+			// Play a random move in every game, each 64 bit draw covers two games
+			int numMoves = (BOARD_SIZE * BOARD_SIZE - turnNumber) * SWAPS.length;
+			long whiteMask = player == WHITE ? -1L : 0L;
+			long randomBits = 0;
+			for(int i = 0; i < active; i++) {
+				randomBits = (i & 1) == 0 ? random.nextLong() : randomBits << 32;
+				int choice = (int) (((randomBits >>> 32) * numMoves) >>> 32);
+
+				long w = this.white[i];
+				long b = this.black[i];
+				long coord = selectBit(~(w | b) & BOARD_MASK, choice / SWAPS.length);
+				int swap = SWAPS[choice % SWAPS.length];
+				this.white[i] = swapQuadrants(w | (coord & whiteMask), swap);
+				this.black[i] = swapQuadrants(b | (coord & ~whiteMask), swap);
+			}
+			turnNumber++;
+
+			// Count the games that ended (same rules as PentagoBitBoard.updateWinner())
+			boolean lastTurn = turnNumber >= MAX_TURNS;
+			for(int i = 0; i < active; ) {
+				boolean whiteWin = hasFiveInARow(this.white[i]);
+				boolean blackWin = hasFiveInARow(this.black[i]);
+				if(!whiteWin && !blackWin && !lastTurn) {
+					i++;
+					continue;
+				}
+
+				if(whiteWin == blackWin) {
+					this.draws++;
+				} else {
+					this.wins[whiteWin ? WHITE : BLACK]++;
+				}
+				active--;
+				this.white[i] = this.white[active];
+				this.black[i] = this.black[active];
+			}
+
+			player = 1 - player;
+		}
+	}
+
+	/**
+	 * @param player WHITE or BLACK
+	 * @return number of games of the last batch won by the player
+	 */
+	int getWins(int player) {
+		return this.wins[player];
+	}
+
+	/**
+	 * @return number of games of the last batch that were drawn
+	 */
+	int getDraws() {
+		return this.draws;
+	}
+
+	/**
+	 * @return number of games played by each call to simulate()
+	 */
+	int size() {
+		return this.white.length;
+	}
+}
@@ -0,0 +1,289 @@
+package student_player;
+
+import static pentago_swap.PentagoBoardState.BLACK;
+import static pentago_swap.PentagoBoardState.BOARD_SIZE;
+import static pentago_swap.PentagoBoardState.WHITE;
+import static student_player.PentagoBitBoard.MAX_MOVES;
+import static student_player.PentagoBitBoard.MAX_TURNS;
+import static student_player.PentagoBitBoard.SWAP_BITS;
+
+/**
+ * Solves positions towards the end of the game exactly with an iterative deepening negamax search with alpha-beta
+ * pruning and a transposition table. Values are from the point of view of the player to move: WIN, DRAW or LOSS.
+ * Positions past the depth limit count as DRAW, so a WIN or LOSS is always a proof while a DRAW is only proven once
+ * the search reaches the end of the game.
+ */
+class EndgameSolver {
+
+	static final int WIN = 1;
+	static final int DRAW = 0;
+	static final int LOSS = -1;
+	static final int UNKNOWN = Integer.MIN_VALUE;
+
+	private static final int MAX_PLIES = MAX_TURNS;
+
+	// Number of nodes searched between checks of the deadline
+	private static final int TIME_CHECK_INTERVAL = 1 << 12;
+
+	// Transposition table flags
+	private static final int EXACT = 0;
+	private static final int LOWER_BOUND = 1;
+	private static final int UPPER_BOUND = 2;
+
+	// Depth stored with wins and losses since they hold at any depth
+	private static final int PROVEN_DEPTH = MAX_PLIES;
+
+	private static final long MOVE_MASK = (1L << 41) - 1;
+
+	/**
+	 * Transposition table, data is packed as | best move (41 bits) | depth (8 bits) | flag (2 bits) | value + 1 (2 bits) |
+	 */
+	private final long[] tableKeys;
+	private final long[] tableData;
+	private final int tableMask;
+
+	// Move buffers for each ply of the search
+	private final long[][] moves = new long[MAX_PLIES + 1][MAX_MOVES];
+	private final int[][] scores = new int[MAX_PLIES + 1][MAX_MOVES];
+
+	// Number of beta cut-offs caused by each placement and swap, used to search the best moves first
+	private final int[][] history = new int[BOARD_SIZE * BOARD_SIZE][SWAP_BITS.length];
+
+	private PentagoBitBoard state;
+	private long endTime;
+	private long nodes;
+	private boolean aborted;
+
+	private long bestMove;
+	private int value;
+
+	/**
+	 * Preallocates the solver
+	 * @param tableEntries number of transposition table entries, rounded up to a power of two
+	 */
+	EndgameSolver(int tableEntries) {
+		int size = Integer.highestOneBit(Math.max(2, tableEntries - 1)) << 1;
+		this.tableKeys = new long[size];
+		this.tableData = new long[size];
+		this.tableMask = size - 1;
+	}
+
+	/**
+	 * Searches deeper and deeper until the value of the position is proven or time runs out. The transposition table
+	 * is kept between calls since its results stay true for the rest of the game.
+	 * @param rootState the position to solve, it is not modified
+	 * @param endTime time in milliseconds at which the search gives up
+	 * @return true if the value of the position was proven, see getValue() and getBestMove()
+	 */
+	boolean solve(PentagoBitBoard rootState, long endTime) {
+		this.state = (PentagoBitBoard) rootState.clone();
+		this.endTime = endTime;
+		this.nodes = 0;
+		this.aborted = false;
+		this.bestMove = 0;
+		this.value = UNKNOWN;
+
+		int remaining = MAX_PLIES - rootState.getTurnNumber();
+		for(int depth = 1; depth <= remaining; depth++) {
+			int result = negamax(depth, 0, LOSS, WIN);
+			if(this.aborted) {
+				return false;
+			}
+
+			this.bestMove = bestStoredMove(this.state.hash());
+			if(result != DRAW || depth == remaining) {
+				this.value = result;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the value of the last position solved for the player to move, UNKNOWN if it wasn't proven
+	 */
+	int getValue() {
+		return this.value;
+	}
+
+	/**
+	 * @return the best move found by the last search
+	 */
+	long getBestMove() {
+		return this.bestMove;
+	}
+
+	/**
+	 * Looks up a position that was proven by an earlier search
+	 * @param position the position
+	 * @return the value of the position for the player to move, UNKNOWN if it hasn't been proven
+	 */
+	int getProvenValue(PentagoBitBoard position) {
+		long hash = position.hash();
+		int entry = (int) hash & this.tableMask;
+		if(this.tableKeys[entry] != hash) {
+			return UNKNOWN;
+		}
+
+		long data = this.tableData[entry];
+		int entryValue = storedValue(data);
+		int flag = storedFlag(data);
+		if(entryValue == WIN && flag != UPPER_BOUND) {
+			return WIN;
+		}
+		if(entryValue == LOSS && flag != LOWER_BOUND) {
+			return LOSS;
+		}
+		if(flag == EXACT && storedDepth(data) >= MAX_PLIES - position.getTurnNumber()) {
+			return entryValue;
+		}
+		return UNKNOWN;
+	}
+
+	/**
+	 * Negamax search with alpha-beta pruning
+	 * @param depth number of plies left to search
+	 * @param ply number of plies from the root
+	 * @param alpha lower bound of the search window
+	 * @param beta upper bound of the search window
+	 * @return the value of the current state for the player to move
+	 */
+	private int negamax(int depth, int ply, int alpha, int beta) {
+
+		if(this.state.gameOver()) {
+			byte winner = this.state.getWinner();
+			if(winner == PentagoBitBoard.DRAW) {
+				return DRAW;
+			}
+			// The last move was made by the opponent so the player to move can only have won through the swap
+			return winner == this.state.getTurnPlayer() ? WIN : LOSS;
+		}
+		if(depth == 0) {
+			return DRAW;
+		}
+
+		if((++this.nodes & (TIME_CHECK_INTERVAL - 1)) == 0 && System.currentTimeMillis() >= this.endTime) {
+			this.aborted = true;
+		}
+		if(this.aborted) {
+			return 0;
+		}
+
+		// Check the transposition table
+		long hash = this.state.hash();
+		int entry = (int) hash & this.tableMask;
+		long hashMove = 0;
+		if(this.tableKeys[entry] == hash) {
+			long data = this.tableData[entry];
+			hashMove = data >>> 12;
+			if(storedDepth(data) >= depth) {
+				int entryValue = storedValue(data);
+				int flag = storedFlag(data);
+				if(flag == EXACT
+						|| flag == LOWER_BOUND && entryValue >= beta
+						|| flag == UPPER_BOUND && entryValue <= alpha) {
+					return entryValue;
+				}
+			}
+		}
+
+		long[] plyMoves = this.moves[ply];
+		int numMoves = orderMoves(plyMoves, this.scores[ply], hashMove);
+
+		int originalAlpha = alpha;
+		int best = LOSS - 1;
+		long bestMove = plyMoves[0];
+		for(int i = 0; i < numMoves; i++) {
+			long move = plyMoves[i];
+			this.state.processMove(move);
+			int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+			this.state.undoMove(move);
+
+			if(this.aborted) {
+				return 0;
+			}
+
+			if(score > best) {
+				best = score;
+				bestMove = move;
+			}
+			if(score > alpha) {
+				alpha = score;
+			}
+			if(alpha >= beta) {
+				this.history[squareIndex(move)][swapIndex(move)] += depth * depth;
+				break;
+			}
+		}
+
+		int flag = best <= originalAlpha ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+		int storedDepth = best == WIN && flag != UPPER_BOUND || best == LOSS && flag != LOWER_BOUND ? PROVEN_DEPTH : depth;
+		this.tableKeys[entry] = hash;
+		this.tableData[entry] = (bestMove & MOVE_MASK) << 12 | (long) storedDepth << 4 | flag << 2 | (best + 1);
+
+		return best;
+	}
+
+	/**
+	 * Generates every legal move (symmetric moves are kept so the proofs are exact) and sorts them so that the move
+	 * from the transposition table comes first, followed by the moves that caused the most cut-offs
+	 * @param plyMoves buffer to generate the moves into
+	 * @param plyScores buffer for the ordering score of each move
+	 * @param hashMove best move stored in the transposition table, 0 if none
+	 * @return the number of moves
+	 */
+	private int orderMoves(long[] plyMoves, int[] plyScores, long hashMove) {
+		long empty = ~(this.state.getPieces(WHITE) | this.state.getPieces(BLACK));
+		int numMoves = this.state.getAllLegalMoves(empty, SWAP_BITS, plyMoves, 0);
+
+		// Insertion sort by score, the lists are short
+		for(int i = 0; i < numMoves; i++) {
+			long move = plyMoves[i];
+			int score = move == hashMove ? Integer.MAX_VALUE : this.history[squareIndex(move)][swapIndex(move)];
+			int j = i - 1;
+			while(j >= 0 && score > plyScores[j]) {
+				plyMoves[j + 1] = plyMoves[j];
+				plyScores[j + 1] = plyScores[j];
+				j--;
+			}
+			plyMoves[j + 1] = move;
+			plyScores[j + 1] = score;
+		}
+		return numMoves;
+	}
+
+	/**
+	 * @param hash hash of a position
+	 * @return the best move stored for the position, 0 if none
+	 */
+	private long bestStoredMove(long hash) {
+		int entry = (int) hash & this.tableMask;
+		return this.tableKeys[entry] == hash ? this.tableData[entry] >>> 12 : 0;
+	}
+
+	private static int squareIndex(long move) {
+		return Long.numberOfTrailingZeros(move & ((1L << 36) - 1));
+	}
+
+	private static int swapIndex(long move) {
+		long swap = move & (0b1111L << 36);
+		for(int i = 0; i < SWAP_BITS.length; i++) {
+			if(SWAP_BITS[i] == swap) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	private static int storedValue(long data) {
+		return (int) (data & 0b11) - 1;
+	}
+
+	private static int storedFlag(long data) {
+		return (int) (data >>> 2) & 0b11;
+	}
+
+	private static int storedDepth(long data) {
+		return (int) (data >>> 4) & 0xFF;
+	}
+}
@@ -0,0 +1,206 @@
+package student_player;
+
+import java.util.Arrays;
+
+import static pentago_swap.PentagoBoardState.BOARD_SIZE;
+import static student_player.PentagoBitBoard.BOARD_MASK;
+import static student_player.PentagoBitBoard.LINE_SHIFTS;
+import static student_player.PentagoBitBoard.LINE_STARTS;
+import static student_player.PentagoBitBoard.SWAP_BITS;
+import static student_player.PentagoBitBoard.WIN_LENGTH;
+import static student_player.PentagoBitBoard.completingSquares;
+import static student_player.PentagoBitBoard.hasFiveInARow;
+import static student_player.PentagoBitBoard.swapQuadrants;
+
+/**
+ * Static evaluation of a position, used to score rollouts that are cut off before the end of the game and to order
+ * the children of a node.
+ *
+ * A line of five is open for a player while the opponent has no piece on it, and it is worth more the more of the
+ * player's pieces it holds (an open line with four pieces is a threat that one placement completes). Every move ends
+ * with a swap, so the player to move is scored on each of the six boards its swap can lead to and keeps the best.
+ * The difference between the two players' open lines is turned into a win probability with a logistic curve.
+ */
+class Evaluator {
+
+	// Value of an open line holding 1, 2, 3 and 4 of a player's pieces
+	private static final int ONE_VALUE = 1;
+	private static final int TWO_VALUE = 3;
+	private static final int THREE_VALUE = 9;
+	private static final int FOUR_VALUE = 27;
+	private static final int[] LINE_VALUES = {0, ONE_VALUE, TWO_VALUE, THREE_VALUE, FOUR_VALUE, 0};
+
+	/**
+	 * Size of the buffer filled by moveScores(), see moveIndex()
+	 */
+	static final int MOVE_SCORES_SIZE = 16 * BOARD_SIZE * BOARD_SIZE;
+
+	// Every line of five and the indexes of its squares
+	private static final long[] LINES = new long[32];
+	private static final int[][] LINE_SQUARES = new int[LINES.length][WIN_LENGTH];
+
+	static {
+		int numLines = 0;
+		for(int direction = 0; direction < LINE_SHIFTS.length; direction++) {
+			for(long starts = LINE_STARTS[direction]; starts != 0; starts &= starts - 1) {
+				for(int i = 0; i < WIN_LENGTH; i++) {
+					int square = Long.numberOfTrailingZeros(starts) + i * LINE_SHIFTS[direction];
+					LINES[numLines] |= 1L << square;
+					LINE_SQUARES[numLines][i] = square;
+				}
+				numLines++;
+			}
+		}
+	}
+
+	// Score of a move that ends the game with a win, more than any count of open lines
+	private static final int WINNING_MOVE = 1 << 16;
+
+	// Score difference at which the player to move is given a win probability of about 73% (e^1 to 1 odds)
+	private static final double LOGISTIC_SCALE = 24;
+
+	/**
+	 * Estimates the chances of the player to move. A win that the next move can force is found exactly: a swap
+	 * leading to five in a row or to a line the placement completes, as long as the swap doesn't also give the
+	 * opponent five in a row.
+	 * @param state a position where the game is not over
+	 * @return the probability that the player to move wins, a draw counting as half a win
+	 */
+	static double winProbability(PentagoBitBoard state) {
+		byte player = state.getTurnPlayer();
+		long own = state.getPieces(player);
+		long opponent = state.getPieces(1 - player);
+		long empty = ~(own | opponent) & BOARD_MASK;
+
+		int best = Integer.MIN_VALUE;
+		boolean draw = false;
+		for(long swapBits : SWAP_BITS) {
+			int swap = (int) (swapBits >>> 36);
+			long swappedOwn = swapQuadrants(own, swap);
+			long swappedOpponent = swapQuadrants(opponent, swap);
+			boolean ownFive = hasFiveInARow(swappedOwn);
+
+			if(hasFiveInARow(swappedOpponent)) {
+				// The swap alone ends the game, no placement can undo it
+				draw |= ownFive;
+				continue;
+			}
+			if(ownFive || completingSquares(swappedOwn, swapQuadrants(empty, swap)) != 0) {
+				return 1;
+			}
+			best = Math.max(best, lineScore(swappedOwn, swappedOpponent) - lineScore(swappedOpponent, swappedOwn));
+		}
+
+		if(best == Integer.MIN_VALUE) {
+			// Every swap gives the opponent five in a row
+			return draw ? 0.5 : 0;
+		}
+		return 1 / (1 + Math.exp(-best / LOGISTIC_SCALE));
+	}
+
+	/**
+	 * Cheap scores of every move used to order the children of a node: the open lines of both players once the piece
+	 * is placed and the quadrants are swapped. For each swap the lines of the swapped board are counted once, and a
+	 * placement only changes the lines through its square: the player's open lines through it gain a piece and the
+	 * opponent's open lines through it are blocked. Each line adds that change to its five squares.
+	 * @param own the pieces of the player to move
+	 * @param opponent the pieces of the other player
+	 * @param scores filled with the score of each legal move at moveIndex(), higher is better
+	 */
+	static void moveScores(long own, long opponent, int[] scores) {
+		for(long swapBits : SWAP_BITS) {
+			int swap = (int) (swapBits >>> 36);
+			int offset = swap * BOARD_SIZE * BOARD_SIZE;
+			long swappedOwn = swapQuadrants(own, swap);
+			long swappedOpponent = swapQuadrants(opponent, swap);
+			long empty = ~(swappedOwn | swappedOpponent) & BOARD_MASK;
+
+			boolean ownFive = hasFiveInARow(swappedOwn);
+			boolean opponentFive = hasFiveInARow(swappedOpponent);
+			if(ownFive || opponentFive) {
+				// The swap ends the game whatever the placement, which can still draw by completing a line
+				long drawing = ownFive ? empty : completingSquares(swappedOwn, empty);
+				for(long squares = empty; squares != 0; squares &= squares - 1) {
+					long square = squares & -squares;
+					scores[offset + Long.numberOfTrailingZeros(square)] =
+							!opponentFive ? WINNING_MOVE : (drawing & square) != 0 ? 0 : -WINNING_MOVE;
+				}
+				continue;
+			}
+
+			Arrays.fill(scores, offset, offset + BOARD_SIZE * BOARD_SIZE, 0);
+			int base = 0;
+			for(int i = 0; i < LINES.length; i++) {
+				long line = LINES[i];
+				int ownCount = Long.bitCount(line & swappedOwn);
+				int opponentCount = Long.bitCount(line & swappedOpponent);
+				int gain = 0;
+				if(opponentCount == 0) {
+					base += LINE_VALUES[ownCount];
+					gain += ownCount == WIN_LENGTH - 1 ? WINNING_MOVE : LINE_VALUES[ownCount + 1] - LINE_VALUES[ownCount];
+				}
+				if(ownCount == 0) {
+					base -= LINE_VALUES[opponentCount];
+					gain += LINE_VALUES[opponentCount];
+				}
+				if(gain != 0) {
+					for(int square : LINE_SQUARES[i]) {
+						scores[offset + square] += gain;
+					}
+				}
+			}
+
+			for(long squares = empty; squares != 0; squares &= squares - 1) {
+				int index = offset + Long.numberOfTrailingZeros(squares);
+				scores[index] = scores[index] >= WINNING_MOVE ? WINNING_MOVE : base + scores[index];
+			}
+		}
+	}
+
+	/**
+	 * @param move a legal move
+	 * @return the index of the move's score in the buffer filled by moveScores(), which is indexed by the swap and the
+	 * square of the placement once the quadrants are swapped
+	 */
+	static int moveIndex(long move) {
+		int swap = (int) (move >>> 36) & 0b1111;
+		return swap * BOARD_SIZE * BOARD_SIZE + Long.numberOfTrailingZeros(swapQuadrants(move & BOARD_MASK, swap));
+	}
+
+	/**
+	 * Adds up the value of a player's open lines. The five squares of the lines starting at each square are summed
+	 * into a count from 0 to 5 held in three bit planes with two full adders, so every line of a direction is counted
+	 * at once.
+	 * @param pieces the pieces of the player
+	 * @param other the pieces of the opponent
+	 * @return the value of the player's open lines
+	 */
+	static int lineScore(long pieces, long other) {
+		int score = 0;
+		for(int direction = 0; direction < LINE_SHIFTS.length; direction++) {
+			int shift = LINE_SHIFTS[direction];
+			long square1 = pieces >>> shift;
+			long square2 = pieces >>> (2 * shift);
+			long square3 = pieces >>> (3 * shift);
+			long square4 = pieces >>> (4 * shift);
+
+			long sum = pieces ^ square1 ^ square2;
+			long carry = (pieces & square1) | (square2 & (pieces ^ square1));
+			long ones = sum ^ square3 ^ square4;
+			long carry2 = (sum & square3) | (square4 & (sum ^ square3));
+			long twos = carry ^ carry2;
+			long fours = carry & carry2;
+
+			long blocked = other | (other >>> shift);
+			blocked |= blocked >>> (2 * shift);
+			blocked |= other >>> (4 * shift);
+			long open = LINE_STARTS[direction] & ~blocked;
+
+			score += ONE_VALUE * Long.bitCount(open & ones & ~twos & ~fours)
+					+ TWO_VALUE * Long.bitCount(open & twos & ~ones)
+					+ THREE_VALUE * Long.bitCount(open & twos & ones)
+					+ FOUR_VALUE * Long.bitCount(open & fours & ~ones);
+		}
+		return score;
+	}
+}
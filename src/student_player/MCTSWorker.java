@@ -0,0 +1,315 @@
+package student_player;
+
+import java.util.Arrays;
+
+import static student_player.PentagoBitBoard.MAX_MOVES;
+
+/**
+ * Runs Monte Carlo Tree Search iterations on a UCTTree until a deadline. Each search thread owns one worker since the
+ * working states and buffers used during an iteration can't be shared, several workers may share the same tree.
+ */
+class MCTSWorker implements Runnable {
+
+	private UCTTree tree;
+	// Lowered by stop() from another thread
+	private volatile long endTime;
+	private RolloutPolicy policy;
+
+	// Owned by this worker so rollouts on different threads never share a generator
+	private final RandomSource random;
+
+	// Plays several rollouts per leaf when set, otherwise each leaf gets a single rollout
+	private final BatchPlayout batch;
+
+	// Rollouts stop after this many moves and are scored by the Evaluator, 0 plays them to the end of the game
+	private final int rolloutPlies;
+
+	// Square of the progressive widening factor: a node with n visits may have factor * sqrt(n) children, added one at
+	// a time best first. 0 expands every child at once.
+	private final double wideningSquared;
+
+	// The working state follows the descent, the rollout state is overwritten by each simulation
+	private PentagoBitBoard workingState;
+	private PentagoBitBoard rolloutState;
+
+	// Nodes visited from the root during the current iteration
+	private final int[] path = new int[UCTTree.MAX_DEPTH];
+
+	// With RAVE, the moves played by each player below the simulated node during the current iteration
+	private long[][] played;
+
+	// Reused by every expansion so move generation doesn't allocate
+	private final long[] moveBuffer = new long[MAX_MOVES];
+	private final int[] moveScores = new int[Evaluator.MOVE_SCORES_SIZE];
+
+	/**
+	 * @param random the random number generator used by this worker only
+	 * @param playoutsPerLeaf number of rollouts run from each leaf
+	 * @param rolloutPlies number of moves after which a rollout is cut off and evaluated, 0 to never cut them off
+	 * @param widening progressive widening factor, 0 to expand nodes fully
+	 */
+	MCTSWorker(RandomSource random, int playoutsPerLeaf, int rolloutPlies, double widening) {
+		this.random = random;
+		this.batch = playoutsPerLeaf > 1 ? new BatchPlayout(playoutsPerLeaf) : null;
+		this.rolloutPlies = rolloutPlies;
+		this.wideningSquared = widening * widening;
+	}
+
+	/**
+	 * Prepares the worker for a new search
+	 * @param tree the tree to grow, its root must be the root state
+	 * @param rootState the current state of the game
+	 * @param endTime time in milliseconds at which the search stops
+	 * @param policy how the moves of the rollouts are picked
+	 */
+	void prepare(UCTTree tree, PentagoBitBoard rootState, long endTime, RolloutPolicy policy) {
+		this.tree = tree;
+		this.endTime = endTime;
+		this.policy = policy;
+		this.played = tree.usesRave() ? new long[2][UCTTree.AMAF_WORDS] : null;
+		if(this.workingState == null) {
+			this.workingState = (PentagoBitBoard) rootState.clone();
+			this.rolloutState = (PentagoBitBoard) rootState.clone();
+		} else {
+			this.workingState.copyFrom(rootState);
+		}
+	}
+
+	@Override
+	public void run() {
+		runUntil(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Searches until the given time or the end of the search, whichever comes first
+	 * @param time time in milliseconds at which to return
+	 */
+	void runUntil(long time) {
+		while (System.currentTimeMillis() < Math.min(time, endTime)) {
+			iterate();
+		}
+	}
+
+	/**
+	 * Ends the search, a worker running on another thread finishes its current iteration and returns
+	 */
+	void stop() {
+		this.endTime = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Performs a single MCTS iteration
+	 */
+	void iterate() {
+		//----------- Descent phase -----------
+		int depth = selectPromisingNode();
+		int promisingNode = path[depth];
+
+		//----------- Growth phase ------------
+		if(!tree.isProven(promisingNode) && !workingState.gameOver()) {
+			if(wideningSquared > 0) {
+				widenNode(promisingNode);
+			} else {
+				expandNode(promisingNode, workingState);
+			}
+		}
+
+		//----------- Rollout phase -----------
+		if(!tree.isProven(promisingNode) && tree.hasChildren(promisingNode)) {
+			path[++depth] = tree.getRandomChild(promisingNode, random);
+			workingState.processMove(tree.getMove(path[depth]));
+			visit(path[depth]);
+		}
+
+		//----------- Simulation and update phase -----------
+		// Proven nodes don't need a simulation, the result is already known
+		int simulatedNode = path[depth];
+		byte player = workingState.getOpponent();
+		int score;
+		if(tree.isProven(simulatedNode)) {
+			score = UCTTree.score(tree.getProvenWinner(simulatedNode, player), player);
+			tree.backPropagate(path, depth, score, player);
+		} else if(workingState.gameOver()) {
+			byte winner = workingState.getWinner();
+			tree.setProven(simulatedNode, winner, player);
+			tree.updateProven(path, depth);
+			score = UCTTree.score(winner, player);
+			tree.backPropagate(path, depth, score, player);
+		} else if(rolloutPlies > 0) {
+			rolloutState.copyFrom(workingState);
+			score = simulateCutoffPlayout(rolloutState, player);
+			tree.backPropagate(path, depth, score, player);
+		} else if(batch != null && policy == RolloutPolicy.RANDOM) {
+			// The moves of batched rollouts aren't recorded, only the moves of the path count for RAVE
+			batch.simulate(workingState, random);
+			int playerWins = batch.getWins(player);
+			int draws = batch.getDraws();
+			tree.backPropagate(path, depth, playerWins, batch.getWins(1 - player), draws, player);
+			score = (UCTTree.WIN_SCORE * playerWins + UCTTree.DRAW_SCORE * draws) / batch.size();
+		} else {
+			rolloutState.copyFrom(workingState);
+			score = UCTTree.score(simulatePlayout(rolloutState), player);
+			tree.backPropagate(path, depth, score, player);
+		}
+
+		if(played != null) {
+			tree.updateAmaf(path, depth, played, score, player);
+			Arrays.fill(played[0], 0L);
+			Arrays.fill(played[1], 0L);
+		}
+
+		// Unwind the working state back to the root
+		for(int i = depth; i > 0; i--) {
+			workingState.undoMove(tree.getMove(path[i]));
+		}
+	}
+
+	/**
+	 * Performs the descent step of MCTS, the nodes visited are recorded in path and their moves are applied to the
+	 * working state
+	 * @return the depth of the most promising node to expand/explore in path
+	 */
+	private int selectPromisingNode() {
+		int depth = 0;
+		path[depth] = UCTTree.ROOT;
+		visit(UCTTree.ROOT);
+
+		// Proven nodes are not descended through, except the root so the search still picks a move
+		while (tree.hasChildren(path[depth]) && (depth == 0 || !tree.isProven(path[depth]))) {
+			if(needsWidening(path[depth])) {
+				widenNode(path[depth]);
+			}
+			path[depth + 1] = tree.getMaxValueChild(path[depth]);
+			depth++;
+			workingState.processMove(tree.getMove(path[depth]));
+			visit(path[depth]);
+		}
+		return depth;
+	}
+
+	/**
+	 * Counts a visit to a node, the working state must be at the node
+	 * @param node the node reached
+	 */
+	private void visit(int node) {
+		if(tree.needsKey(node)) {
+			tree.setKey(node, workingState.canonicalHash(), workingState.getTurnNumber());
+		}
+		tree.addVisit(node);
+	}
+
+	/**
+	 * Performs the expansion stage of MCTS. If the tree is full the node is left as a leaf.
+	 * @param growthNode node to expand
+	 * @param growthState the state at growthNode
+	 */
+	void expandNode(int growthNode, PentagoBitBoard growthState) {
+		int numMoves = growthState.getAllLegalNonSymmetricMoves(moveBuffer);
+		tree.expand(growthNode, moveBuffer, numMoves);
+	}
+
+	/**
+	 * @param node a node with children
+	 * @return true if the node has had enough visits for one more child
+	 */
+	private boolean needsWidening(int node) {
+		if(wideningSquared == 0 || tree.isFullyExpanded(node)) {
+			return false;
+		}
+		double childCount = tree.getChildCount(node);
+		return childCount * childCount < wideningSquared * tree.getNumSims(node);
+	}
+
+	/**
+	 * Adds the next child of a node, the working state must be at the node. Children are added in decreasing order
+	 * of Evaluator.moveScores() (then increasing move) so the newest child tells which moves already have one and no
+	 * list of the remaining moves needs to be kept.
+	 * @param node the node to widen
+	 */
+	private void widenNode(int node) {
+		int childCount = tree.getChildCount(node);
+		int numMoves = workingState.getAllLegalNonSymmetricMoves(moveBuffer);
+		byte player = workingState.getTurnPlayer();
+		Evaluator.moveScores(workingState.getPieces(player), workingState.getPieces(1 - player), moveScores);
+
+		long newest = childCount == 0 ? 0 : tree.getMove(tree.getFirstChild(node));
+		int newestScore = childCount == 0 ? Integer.MAX_VALUE : moveScore(newest);
+
+		long best = 0;
+		int bestScore = Integer.MIN_VALUE;
+		for(int i = 0; i < numMoves; i++) {
+			long move = moveBuffer[i];
+			int score = moveScore(move);
+			boolean afterNewest = score < newestScore || score == newestScore && move > newest;
+			if(afterNewest && (score > bestScore || score == bestScore && move < best)) {
+				best = move;
+				bestScore = score;
+			}
+		}
+
+		if(best != 0) {
+			tree.widen(node, best, numMoves, childCount);
+		}
+	}
+
+	private int moveScore(long move) {
+		return moveScores[Evaluator.moveIndex(move)];
+	}
+
+	/**
+	 * Performs a default policy simulation. With random moves each 64 bit draw picks two moves, one from each half.
+	 * @param state the state to simulate from, it is played out until the end of the game
+	 * @return the winner of the game
+	 */
+	private byte simulatePlayout(PentagoBitBoard state) {
+		if(policy != RolloutPolicy.RANDOM) {
+			while(!state.gameOver()) {
+				playRolloutMove(state, policy.nextMove(state, random));
+			}
+			return state.getWinner();
+		}
+
+		while(!state.gameOver()) {
+			long randomBits = random.nextLong();
+			playRolloutMove(state, state.getRandomMove((int) (randomBits >>> 32)));
+			if(!state.gameOver()) {
+				playRolloutMove(state, state.getRandomMove((int) randomBits));
+			}
+		}
+		return state.getWinner();
+	}
+
+	/**
+	 * Applies a move of a rollout, recording it for RAVE
+	 * @param state the state of the rollout
+	 * @param move the move
+	 */
+	private void playRolloutMove(PentagoBitBoard state, long move) {
+		state.processMove(move);
+		if(played != null) {
+			UCTTree.recordMove(played, move);
+		}
+	}
+
+	/**
+	 * Performs a default policy simulation of at most rolloutPlies moves. A game that isn't over by then is scored
+	 * with the Evaluator's estimate of the winning chances instead of a win, draw or loss.
+	 * @param state the state to simulate from
+	 * @param player the player to score the simulation for
+	 * @return the score of the simulation for player, from 0 (a loss) to UCTTree.WIN_SCORE (a win)
+	 */
+	private int simulateCutoffPlayout(PentagoBitBoard state, byte player) {
+		for(int ply = 0; ply < rolloutPlies && !state.gameOver(); ply++) {
+			playRolloutMove(state, policy.nextMove(state, random));
+		}
+
+		if(state.gameOver()) {
+			return UCTTree.score(state.getWinner(), player);
+		}
+		double probability = Evaluator.winProbability(state);
+		if(state.getTurnPlayer() != player) {
+			probability = 1 - probability;
+		}
+		return (int) Math.round(probability * UCTTree.WIN_SCORE);
+	}
+}
@@ -0,0 +1,85 @@
+package student_player;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static pentago_swap.PentagoBoardState.BLACK;
+import static pentago_swap.PentagoBoardState.WHITE;
+import static student_player.PentagoBitBoard.BOARD_MASK;
+
+/**
+ * Moves for the opening positions of a game, taken from the deep search run during the long first move. Every
+ * position of the search tree where we are to move and that was searched enough gets the move with the most
+ * simulations, and the search is followed through every reply of the opponent that was searched enough.
+ *
+ * Positions are looked up by their canonical hash, so a position symmetric to one in the book (a rotation or
+ * reflection of the board) also gets a move: the move is stored for the canonical orientation of the position and
+ * transformed back to the orientation of the position asked about.
+ */
+class OpeningBook {
+
+	// Simulations a position needs in the search to be put in the book
+	private static final int MIN_SIMS = 5000;
+
+	// Canonical hash of a position to the move for its canonical orientation
+	private final Map<Long, Long> moves = new HashMap<>();
+
+	/**
+	 * Adds the positions of a search tree to the book
+	 * @param tree the tree of the search
+	 * @param rootState the state at the root of the tree
+	 * @param player the player the moves are for
+	 */
+	void add(UCTTree tree, PentagoBitBoard rootState, byte player) {
+		add(tree, UCTTree.ROOT, (PentagoBitBoard) rootState.clone(), player);
+	}
+
+	private void add(UCTTree tree, int node, PentagoBitBoard state, byte player) {
+		if(state.gameOver() || tree.getNumSims(node) < MIN_SIMS) {
+			return;
+		}
+
+		if(state.getTurnPlayer() == player) {
+			int best = tree.getMaxSimsChild(node);
+			if(best == UCTTree.NONE || tree.getProven(best) == UCTTree.PROVEN_LOSS) {
+				return;
+			}
+
+			long move = tree.getMove(best);
+			this.moves.putIfAbsent(state.canonicalHash(),
+					PentagoBitBoard.transformMove(move, state.canonicalSymmetry()));
+
+			state.processMove(move);
+			add(tree, best, state, player);
+			state.undoMove(move);
+		} else {
+			for(int child = tree.getFirstChild(node); child != UCTTree.NONE; child = tree.getNextSibling(child)) {
+				long move = tree.getMove(child);
+				state.processMove(move);
+				add(tree, child, state, player);
+				state.undoMove(move);
+			}
+		}
+	}
+
+	/**
+	 * @param state the current state of the game
+	 * @return the book's move for the state, 0 if the state isn't in the book
+	 */
+	long getMove(PentagoBitBoard state) {
+		Long move = this.moves.get(state.canonicalHash());
+		if(move == null) {
+			return 0;
+		}
+
+		long transformed = PentagoBitBoard.transformMove(move,
+				PentagoBitBoard.inverseSymmetry(state.canonicalSymmetry()));
+
+		// The placement must be free, which only fails if two positions have the same hash
+		long occupied = state.getPieces(WHITE) | state.getPieces(BLACK);
+		if((transformed & occupied & BOARD_MASK) != 0) {
+			return 0;
+		}
+		return ((long) state.getTurnPlayer() << 40) | (transformed & ~(1L << 40));
+	}
+}
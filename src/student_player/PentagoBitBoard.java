@@ -4,11 +4,9 @@ import boardgame.Board;
 import pentago_swap.PentagoBoardState;
 import pentago_swap.PentagoMove;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Scanner;
-import java.util.concurrent.ThreadLocalRandom;
 
 import static pentago_swap.PentagoBoardState.*;
 
@@ -18,12 +16,20 @@ import static pentago_swap.PentagoBoardState.*;
 public class PentagoBitBoard {
 
 	private static final int NUM_QUADS = 4;
-	private static final int MAX_TURNS = 36;
-	private static final int QUAD_SIZE = 3;
 
-	// Supposedly faster than java.util.Random
-	// https://lemire.me/blog/2016/02/01/default-random-number-generators-are-slow/
-	private static final ThreadLocalRandom rand = ThreadLocalRandom.current();
+	/**
+	 * Number of placements in a game. The server ends the game once white has made its 18th move, so the last square
+	 * is never filled.
+	 */
+	static final int MAX_TURNS = PentagoBoardState.MAX_TURNS * 2 - 1;
+
+	/**
+	 * Upper bound on the number of legal moves in any state (every spot free with each of the 6 swaps), use it to size
+	 * move buffers
+	 */
+	static final int MAX_MOVES = BOARD_SIZE * BOARD_SIZE * 6;
+
+	static final long BOARD_MASK = (1L << (BOARD_SIZE * BOARD_SIZE)) - 1;
 
 	static final byte DRAW = Byte.MAX_VALUE;
 	private static final byte NOBODY = Byte.MAX_VALUE - 1;
@@ -105,6 +111,33 @@ public class PentagoBitBoard {
 
 	}
 
+	/**
+	 * Shift between neighbouring squares of a line in each direction: across a row, down a column, along a diagonal
+	 * and along an anti-diagonal
+	 */
+	static final int[] LINE_SHIFTS = {1, BOARD_SIZE, BOARD_SIZE + 1, BOARD_SIZE - 1};
+
+	/**
+	 * For each direction in LINE_SHIFTS, the squares where a line of five can start without wrapping around the edge
+	 * of the board (the line covers the start and the four squares at the next multiples of the shift)
+	 */
+	static final long[] LINE_STARTS = {
+		0b000011000011000011000011000011000011L, // Rows
+		0b000000000000000000000000111111111111L, // Columns
+		0b000000000000000000000000000011000011L, // Diagonals
+		0b000000000000000000000000110000110000L  // Anti-diagonals
+	};
+
+	/**
+	 * Fewest pieces a player needs for five in a row
+	 */
+	static final int WIN_LENGTH = 5;
+
+	/**
+	 * The centers of the four quadrants, they are part of more winning lines than any other square
+	 */
+	static final long CENTER_MASK = 0b000000010010000000000000010010000000L;
+
 	// Didn't end up using this but it contains all configurations that are almost a win (one placement away after quadrant swap)
 	private static final Long[] oneAwayMasks;
 
@@ -144,6 +177,98 @@ public class PentagoBitBoard {
 		{-1,-1,-1, 0}     // From Quad 3 -> Quad 3 is 0 bits (not used as an actual swap since it would be invalid)
 	};
 
+	/**
+	 * The swaps of QUAD_SWAPS already shifted into their position in a move long (see getAllLegalMoves())
+	 */
+	static final long[] SWAP_BITS = new long[QUAD_SWAPS.length];
+
+	/**
+	 * Quadrant swaps as a single delta swap, indexed by the 4 swap bits of a move (smaller quadrant << 2 | larger
+	 * quadrant): the mask of the larger quadrant and the number of bits up to the smaller quadrant. The entries for
+	 * invalid swaps are left at 0, which leaves the board unchanged.
+	 */
+	private static final long[] SWAP_MASKS = new long[NUM_QUADS * NUM_QUADS];
+	private static final int[] SWAP_SHIFTS = new int[NUM_QUADS * NUM_QUADS];
+
+	/**
+	 * Only swap used on the empty board (Q1 -> Q2)
+	 */
+	private static final long[] IDENTICAL_QUADS_SWAPS = {swapBits(1, 2)};
+
+	// Generates SWAP_BITS, SWAP_MASKS and SWAP_SHIFTS
+	static {
+		for(int i = 0; i < QUAD_SWAPS.length; i++) {
+			int smallerQuad = QUAD_SWAPS[i][0];
+			int largerQuad = QUAD_SWAPS[i][1];
+			SWAP_BITS[i] = swapBits(smallerQuad, largerQuad);
+			SWAP_MASKS[(smallerQuad << 2) | largerQuad] = QUADRANT_MASKS[largerQuad];
+			SWAP_SHIFTS[(smallerQuad << 2) | largerQuad] = QUADRANT_BIT_SHIFTS[smallerQuad][largerQuad];
+		}
+	}
+
+
+	/**
+	 * Number of symmetries of the board: 4 rotations and 4 reflections. Unlike permuting quadrants these map lines to
+	 * lines and quadrant swaps to quadrant swaps, so symmetric positions have the same value
+	 */
+	private static final int NUM_SYMMETRIES = 8;
+
+	/**
+	 * Zobrist keys grouped by row: entry ((symmetry * 2 + colour) * BOARD_SIZE + row) * 64 + rowBits is the XOR of the
+	 * keys of the squares the pieces in rowBits land on after applying the symmetry, so hashing a board only takes
+	 * one lookup per row and colour
+	 */
+	private static final long[] ZOBRIST_ROWS = new long[NUM_SYMMETRIES * 2 * BOARD_SIZE << BOARD_SIZE];
+
+	// Generates the ZOBRIST_ROWS
+	static {
+		// Fixed seed so hashes are the same in every run
+		Random keyGenerator = new Random(424);
+		long[][] squareKeys = new long[2][BOARD_SIZE * BOARD_SIZE];
+		for(long[] colourKeys : squareKeys) {
+			for(int square = 0; square < colourKeys.length; square++) {
+				colourKeys[square] = keyGenerator.nextLong();
+			}
+		}
+
+		int entry = 0;
+		for(int symmetry = 0; symmetry < NUM_SYMMETRIES; symmetry++) {
+			for(int colour = 0; colour < 2; colour++) {
+				for(int row = 0; row < BOARD_SIZE; row++) {
+					for(int rowBits = 0; rowBits < 1 << BOARD_SIZE; rowBits++) {
+						long key = 0;
+						for(int col = 0; col < BOARD_SIZE; col++) {
+							if((rowBits & (1 << (BOARD_SIZE - 1 - col))) != 0) {
+								key ^= squareKeys[colour][transformSquare(symmetry, row, col)];
+							}
+						}
+						ZOBRIST_ROWS[entry++] = key;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies one of the board symmetries to a square
+	 * @param symmetry index of the symmetry (0 is the identity)
+	 * @param row row of the square
+	 * @param col column of the square
+	 * @return the transformed square as row * BOARD_SIZE + col
+	 */
+	private static int transformSquare(int symmetry, int row, int col) {
+		int last = BOARD_SIZE - 1;
+		switch(symmetry) {
+			case 1:  return col * BOARD_SIZE + (last - row);          // Rotate 90
+			case 2:  return (last - row) * BOARD_SIZE + (last - col); // Rotate 180
+			case 3:  return (last - col) * BOARD_SIZE + row;          // Rotate 270
+			case 4:  return row * BOARD_SIZE + (last - col);          // Mirror left/right
+			case 5:  return (last - row) * BOARD_SIZE + col;          // Mirror top/bottom
+			case 6:  return col * BOARD_SIZE + row;                   // Mirror on the main diagonal
+			case 7:  return (last - col) * BOARD_SIZE + (last - row); // Mirror on the anti diagonal
+			default: return row * BOARD_SIZE + col;
+		}
+	}
 
 	/**
 	 * Constructor for conversion of PentagoBoardState to a PentagoBitBoard
@@ -211,6 +336,18 @@ public class PentagoBitBoard {
 		return new PentagoBitBoard(this);
 	}
 
+	/**
+	 * Overwrites this state with another one without allocating
+	 * @param board Existing board
+	 */
+	void copyFrom(PentagoBitBoard board) {
+		this.pieces[0] = board.pieces[0];
+		this.pieces[1] = board.pieces[1];
+		this.winner = board.winner;
+		this.turnPlayer = board.turnPlayer;
+		this.turnNumber = board.turnNumber;
+	}
+
 	/**
 	 * Creates a PentagoBitBoard with preset properties
 	 * @param pieces Black and white piece placements
@@ -227,7 +364,7 @@ public class PentagoBitBoard {
 	}
 
 	/**
-	 * Returns all legal moves as a long:
+	 * Writes all legal moves into the moves buffer as longs:
 	 * <pre>
 	 *|                       |P|     |                                    |
 	 *|                       |I|4 bit|                                    |
@@ -238,221 +375,203 @@ public class PentagoBitBoard {
 	 * 	Note that sq must be less than lq
 	 *
 	 * @param availableSpots Specifies which locations on the board this method should generate moves for
-	 * @param quadrantSwaps Specifies the domain of quadrant swaps that should be used for move generation
-	 * @param intialSize Provide an expected size of moves such that the returned ArrayList is populated more efficiently
+	 * @param quadrantSwaps Specifies the domain of quadrant swaps that should be used for move generation (already
+	 *                      shifted into position, see SWAP_BITS)
+	 * @param moves Buffer the moves are written to, must have room for MAX_MOVES entries
+	 * @param count Number of moves already in the buffer, new moves are appended after them
 	 *
-	 * @return All legal moves constrained to positions in availableSwaps and swaps in quadrantSwaps as longs
+	 * @return The number of moves in the buffer after all legal moves constrained to positions in availableSpots and
+	 * swaps in quadrantSwaps have been appended
 	 */
-	ArrayList<Long> getAllLegalMoves(long availableSpots, byte[][] quadrantSwaps, int intialSize) {
+	int getAllLegalMoves(long availableSpots, long[] quadrantSwaps, long[] moves, int count) {
 
-		ArrayList<Long> moves = new ArrayList<>(intialSize);
+		long playerBit = (long) turnPlayer << 40;
+		long spots = availableSpots & BOARD_MASK;
 
-		long mask = 1;
-		for(int i = 0; i < BOARD_SIZE * BOARD_SIZE; i++) {
-			if((availableSpots & mask) == mask) {
-				for(byte[] quadrantSwap : quadrantSwaps) {
-					moves.add((((((((long)turnPlayer << 2) | quadrantSwap[0]) << 2) | quadrantSwap[1]) << 36) | mask));
-				}
+		// Visit set bits from lowest to highest
+		while(spots != 0) {
+			long coord = spots & -spots;
+			for(long quadrantSwap : quadrantSwaps) {
+				moves[count++] = playerBit | quadrantSwap | coord;
 			}
-			mask = mask << 1;
+			spots ^= coord;
 		}
 
-		return moves;
+		return count;
 	}
 
 	/**
-	 * Efficiently attempts to play a random position on the board until a legal placement is found then selects
-	 * a random quadrant swap.
-	 *
+	 * Picks a random legal move using the upper 32 bits of a single draw, see getRandomMove(int)
+	 * @param rand the search thread's random number generator
 	 * @return A random legal move
 	 */
-	long getRandomMove() {
-
-		long availableSpots = ~(this.pieces[WHITE] | this.pieces[BLACK]);
-
-		long move;
-		// Pick a random empty coordinate
-		do {
-			move = 1L << rand.nextInt(BOARD_SIZE * BOARD_SIZE);
-		} while((move & availableSpots) != move);
-
-		// Pick random quadrant swap
-		byte[] swaps = QUAD_SWAPS[rand.nextInt(QUAD_SWAPS.length)];
-
-		int largerQuad = swaps[1];
-		int smallerQuad = swaps[0];
-
-		return ((((((long)turnPlayer << 2) | smallerQuad) << 2) | largerQuad) << 36) | move;
+	long getRandomMove(RandomSource rand) {
+		return getRandomMove((int) (rand.nextLong() >>> 32));
 	}
 
-
 	/**
-	 * Generates all legal moves available in this state ignoring moves that are symmetric:
-	 * Symmetry is identified by examining the number of identical quadrants to determine
-	 * a smaller subset of all legal moves to generate
+	 * Picks a random empty coordinate and a random quadrant swap in constant time, whatever the number of pieces on the
+	 * board. The random bits are scaled to the number of legal moves (multiply and keep the high bits rather than a
+	 * division), the quotient and remainder by the number of swaps give the empty square and the swap.
 	 *
-	 * @return All legal moves ignoring symmetric moves
+	 * @param randomBits 32 uniformly random bits
+	 * @return A random legal move
 	 */
-	ArrayList<Long> getAllLegalNonSymmetricMoves() {
-
-		// Identify which quadrants are identical
-		ArrayList<ArrayList<Byte>> equalQuadrants = partitionQuadrants();
-
-		ArrayList<Long> moves;
-
-		byte[][] swaps = QUAD_SWAPS;
-		long placements = ~(this.pieces[WHITE] | this.pieces[BLACK]);
-		int initialCapacity = ((BOARD_SIZE * BOARD_SIZE) - this.turnNumber) * swaps.length;
-
-		switch (equalQuadrants.size()) {
-
-			case 1:
-				// 4 identical quadrants (Q0=Q1=Q2=Q3):
-				// Try a move for each free spot in Q0 and just swap Q1 -> Q2
-
-				byte Q0 = equalQuadrants.get(0).get(0);
-
-				placements = placements & QUADRANT_MASKS[Q0];
-				swaps = new byte[][]{{1, 2}};
-				initialCapacity = (QUAD_SIZE * QUAD_SIZE) * swaps.length;
-
-				moves = getAllLegalMoves(placements, swaps, initialCapacity);
-				break;
-
-			case 2:
-				// 2 pairs of identical quadrants (Q0=Q2, Q1=Q3):
-				// Try a move for each free spot in Q0 and Q1 and do all the swaps
-				if (equalQuadrants.get(0).size() == 2) {
+	long getRandomMove(int randomBits) {
 
-					Q0 = equalQuadrants.get(0).get(0);
-					byte Q1 = equalQuadrants.get(1).get(0);
+		long availableSpots = ~(this.pieces[WHITE] | this.pieces[BLACK]) & BOARD_MASK;
 
-					placements = placements & (QUADRANT_MASKS[Q0] | QUADRANT_MASKS[Q1]);
-					initialCapacity = (QUAD_SIZE * QUAD_SIZE) * 2 * swaps.length;
-
-					moves = getAllLegalMoves(placements, swaps, initialCapacity);
-				}
-				// 1 unique, 3 identical quadrants(Q0, Q1=Q2=Q3):
-				// Try a move for each free spot in Q0 and do a swap for Q0 -> Q1, Q0 -> Q2, Q0 -> Q2, Q1 -> Q2
-				// And try a move for each free spot in Q1 and do all the swaps
-				else {
-
-					ArrayList<Byte> uniqueQuadrant = equalQuadrants.get(0).size() < equalQuadrants.get(1).size() ? equalQuadrants.get(0) : equalQuadrants.get(1);
-					ArrayList<Byte> identicalQuadrants = equalQuadrants.get(0).size() > equalQuadrants.get(1).size() ? equalQuadrants.get(0) : equalQuadrants.get(1);
-
-					// Generate moves for the unique quadrant
-					long placementsQ0 = placements & QUADRANT_MASKS[uniqueQuadrant.get(0)];
-					byte[][] swapsQ0 = new byte[4][2];
-					int initialCapacityQ0 = (QUAD_SIZE * QUAD_SIZE) * swaps.length;
-
-					Q0 = uniqueQuadrant.get(0);
-
-					// Generate first 3 swaps
-					for(int i = 0; i < identicalQuadrants.size(); i++) {
-						byte quadrant = identicalQuadrants.get(i);
-						byte largerQuadrant = quadrant > Q0 ? quadrant : Q0;
-						byte smallerQuadrant = quadrant < Q0 ? quadrant : Q0;
-						swapsQ0[i][0] = smallerQuadrant;
-						swapsQ0[i][1] = largerQuadrant;
-					}
-
-					// Generate last swap
-					byte largerQuadrant = identicalQuadrants.get(0) > identicalQuadrants.get(1) ? identicalQuadrants.get(0) : identicalQuadrants.get(1);
-					byte smallerQuadrant = identicalQuadrants.get(0) < identicalQuadrants.get(1) ? identicalQuadrants.get(0) : identicalQuadrants.get(1);
-					swapsQ0[swapsQ0.length-1][0] = smallerQuadrant;
-					swapsQ0[swapsQ0.length-1][1] = largerQuadrant;
-
-					moves = getAllLegalMoves(placementsQ0, swapsQ0, initialCapacityQ0);
-
-					// Next generate moves for one of the 3 identical quadrants
-					long placementsQ1 = placements & QUADRANT_MASKS[identicalQuadrants.get(0)];
-					byte[][] swapsQ1 = swaps;
-					int initialCapacityQ1 = (QUAD_SIZE * QUAD_SIZE) * swapsQ1.length;
-
-					moves.addAll(getAllLegalMoves(placementsQ1, swapsQ1, initialCapacityQ1));
-				}
-
-				break;
-
-			// Default is to return all legal moves as usual
-			default:
-				moves = getAllLegalMoves(placements, swaps, initialCapacity);
-				break;
-		}
+		int numMoves = Long.bitCount(availableSpots) * QUAD_SWAPS.length;
+		int choice = (int) (((randomBits & 0xFFFFFFFFL) * numMoves) >>> 32);
 
-		return moves;
+		long coord = selectBit(availableSpots, choice / QUAD_SWAPS.length);
+		return ((long) turnPlayer << 40) | SWAP_BITS[choice % QUAD_SWAPS.length] | coord;
 	}
 
 	/**
-	 * Splits quadrants into partitions where quadrants in the same partition are identical.
-	 * Useful for identifying symmetric moves.
-	 *
-	 * Examples:
-     * <pre>
-     * Q0 = Q1 =/= Q2 = Q3      Q0 =/= Q1 = Q2 = Q3      Q0 = Q1 = Q2 = Q3
-     * {                        {                        {
-     *     {0, 1},                     {0},                     {0, 1, 2, 3}
-     *     {2, 3}                      {1, 2, 3}         }
-     * }                        }
-     * </pre>
+	 * Picks a move for an informed rollout, in order of preference:
+	 * <ol>
+	 *     <li>A move that wins right away: for each swap, a placement completing a line once the quadrants are swapped</li>
+	 *     <li>A placement on a square where the opponent could complete a line, with a random swap</li>
+	 *     <li>Half of the time, a placement on a free quadrant center with a random swap</li>
+	 *     <li>A uniformly random move</li>
+	 * </ol>
+	 * Everything is found with shifts on the bitboards (see completingSquares()) rather than by generating and trying
+	 * each legal move, so a step costs about as much as a few win checks.
 	 *
-	 * @return An Array List of partitions where each partition contains identical quadrants.
+	 * @param rand the search thread's random number generator
+	 * @return a legal move
 	 */
-	private ArrayList<ArrayList<Byte>> partitionQuadrants() {
-
-		// Put each quadrant (the two piece longs) into a list
-		ArrayList<ArrayList<Long>> quadrants = new ArrayList<>(NUM_QUADS);
-
-		for(int i = 0; i < NUM_QUADS; i++) {
-			quadrants.add(new ArrayList<>());
-			for(long pieceLong : this.pieces) {
-				// Shift all quadrants to the same bit position
-				quadrants.get(i).add(pieceLong >> QUADRANT_BIT_SHIFTS[i][NUM_QUADS-1]);
+	long getInformedMove(RandomSource rand) {
+		long own = this.pieces[this.turnPlayer];
+		long opponent = this.pieces[1 - this.turnPlayer];
+		long empty = ~(own | opponent) & BOARD_MASK;
+		long playerBit = (long) this.turnPlayer << 40;
+
+		// A swap is its own inverse, so it also maps a square back from the swapped board. When the swap alone makes
+		// five in a row any placement wins, and swaps that also give the opponent five in a row only draw.
+		for(long swapBits : SWAP_BITS) {
+			int swap = (int) (swapBits >>> 36);
+			long swappedOwn = swapQuadrants(own, swap);
+			long swappedEmpty = swapQuadrants(empty, swap);
+			long winning = hasFiveInARow(swappedOwn) ? swappedEmpty : completingSquares(swappedOwn, swappedEmpty);
+			if(winning != 0 && !hasFiveInARow(swapQuadrants(opponent, swap))) {
+				return playerBit | swapBits | swapQuadrants(winning & -winning, swap);
 			}
 		}
 
-		// Partition quadrants into buckets where they are equal
-		HashMap<ArrayList<Long>, ArrayList<Byte>> equalQuadrants = new HashMap<>();
+		long randomBits = rand.nextLong();
+		int swapChoice = (int) (((randomBits & 0xFFFFFFFFL) * QUAD_SWAPS.length) >>> 32);
 
-		for(byte j = 0; j < NUM_QUADS; j++) {
+		long threats = completingSquares(opponent, empty);
+		if(threats != 0) {
+			long coord = selectBit(threats, (int) (((randomBits >>> 32) * Long.bitCount(threats)) >>> 32));
+			return playerBit | SWAP_BITS[swapChoice] | coord;
+		}
 
-			// Found a similar quadrant, add quadrant number to existing partition
-			if(equalQuadrants.containsKey(quadrants.get(j))) {
-				equalQuadrants.get(quadrants.get(j)).add(j);
-			}
-			// New unique quadrant, create a new partition with the quadrant number
-			else {
-				ArrayList<Byte> newPartition = new ArrayList<>();
-				newPartition.add(j);
-				equalQuadrants.put(quadrants.get(j), newPartition);
-			}
+		long centers = empty & CENTER_MASK;
+		if(centers != 0 && (randomBits & 1) == 0) {
+			long coord = selectBit(centers, (int) (((randomBits >>> 32) * Long.bitCount(centers)) >>> 32));
+			return playerBit | SWAP_BITS[swapChoice] | coord;
 		}
 
-		return new ArrayList<>(equalQuadrants.values());
+		return getRandomMove((int) (randomBits >>> 32));
 	}
 
 	/**
-	 * Swaps two quadrants on the board. Note that smallerQuad < largerQuad. No legality is checked on this for efficiency
-	 *
-	 * @param smallerQuad First quadrant to swap
-	 * @param largerQuad Second quadrant to swap
+	 * Finds the n-th lowest set bit by binary search on the number of set bits in each half. The search is unrolled
+	 * and branch-free: when n is past the low half, the mask is all ones and the search moves to the high half.
+	 * @param bits the bits to select from
+	 * @param n index of the bit to find, must be less than the number of set bits
+	 * @return a long with only the n-th set bit of bits set
 	 */
-	private void swapQuadrants(int smallerQuad, int largerQuad) {
-
-		for(int i = 0; i < this.pieces.length; i++) {
-			// Shift the smaller quad down to make for the new larger quad
+	static long selectBit(long bits, int n) {
+		int position = 0;
+		int count, high;
+
+		count = Long.bitCount(bits & 0xFFFFFFFFL);
+		high = (count - n - 1) >> 31;
+		n -= count & high;
+		position += 32 & high;
+
+		count = Long.bitCount((bits >>> position) & 0xFFFFL);
+		high = (count - n - 1) >> 31;
+		n -= count & high;
+		position += 16 & high;
+
+		count = Long.bitCount((bits >>> position) & 0xFFL);
+		high = (count - n - 1) >> 31;
+		n -= count & high;
+		position += 8 & high;
+
+		count = Long.bitCount((bits >>> position) & 0xFL);
+		high = (count - n - 1) >> 31;
+		n -= count & high;
+		position += 4 & high;
+
+		count = Long.bitCount((bits >>> position) & 0x3L);
+		high = (count - n - 1) >> 31;
+		n -= count & high;
+		position += 2 & high;
+
+		count = (int) (bits >>> position) & 1;
+		high = (count - n - 1) >> 31;
+		position += 1 & high;
+
+		return 1L << position;
+	}
 
-			long newLarge = (this.pieces[i] & QUADRANT_MASKS[smallerQuad]) >> QUADRANT_BIT_SHIFTS[smallerQuad][largerQuad];
+	/**
+	 * Generates all legal moves available in this state ignoring moves that are symmetric. This is only done on the
+	 * empty board: every placement there is a rotation or reflection of a placement in Q0, and a swap only moves the
+	 * piece to another quadrant (the same as placing it there), so the placements in Q0 with the swap Q1 -> Q2 (which
+	 * changes nothing) stand for every move. On any other board quadrants that hold the same pieces aren't
+	 * interchangeable, since lines of five cross quadrants, so every legal move is generated.
+	 *
+	 * @param moves Buffer the moves are written to, must have room for MAX_MOVES entries
+	 * @return The number of moves written to the buffer
+	 */
+	int getAllLegalNonSymmetricMoves(long[] moves) {
+		long occupied = this.pieces[WHITE] | this.pieces[BLACK];
+		if(occupied == 0) {
+			return getAllLegalMoves(QUADRANT_MASKS[0], IDENTICAL_QUADS_SWAPS, moves, 0);
+		}
+		return getAllLegalMoves(~occupied, SWAP_BITS, moves, 0);
+	}
 
-			// Shift the larger quad up to make the new smaller quad
-			long newSmall = (this.pieces[i] & QUADRANT_MASKS[largerQuad]) << QUADRANT_BIT_SHIFTS[smallerQuad][largerQuad];
+	/**
+	 * Swaps two quadrants for both players
+	 * @param swap the swap bits of a move (smaller quadrant << 2 | larger quadrant)
+	 */
+	private void swapQuadrants(int swap) {
+		this.pieces[WHITE] = swapQuadrants(this.pieces[WHITE], swap);
+		this.pieces[BLACK] = swapQuadrants(this.pieces[BLACK], swap);
+	}
 
-			// Perform the update
-			long newConfig = newLarge | newSmall;
-			long updateMask = ~ (QUADRANT_MASKS[smallerQuad] | QUADRANT_MASKS[largerQuad]);
+	/**
+	 * Places a piece and then swaps two quadrants, each colour is read and written once
+	 * @param player the player placing the piece
+	 * @param coord the bit of the placement
+	 * @param swap the swap bits of a move (smaller quadrant << 2 | larger quadrant)
+	 */
+	private void placeAndSwap(int player, long coord, int swap) {
+		// The coordinate is only kept for the player's colour (WHITE is 0 and BLACK is 1)
+		this.pieces[WHITE] = swapQuadrants(this.pieces[WHITE] | (coord & (player - 1L)), swap);
+		this.pieces[BLACK] = swapQuadrants(this.pieces[BLACK] | (coord & -(long) player), swap);
+	}
 
-			this.pieces[i] = (this.pieces[i] & updateMask) | newConfig;
-		}
+	/**
+	 * Swaps two quadrants of one player's pieces. The smaller quadrant is always in the higher bits, so with delta
+	 * holding the bits that differ between the two quadrants (aligned on the larger quadrant), flipping delta and delta
+	 * shifted up swaps them in place without a loop or a branch (delta swap).
+	 * @param pieces the pieces of one player
+	 * @param swap the swap bits of a move (smaller quadrant << 2 | larger quadrant)
+	 * @return the pieces after the swap
+	 */
+	static long swapQuadrants(long pieces, int swap) {
+		int shift = SWAP_SHIFTS[swap];
+		long delta = ((pieces >>> shift) ^ pieces) & SWAP_MASKS[swap];
+		return pieces ^ delta ^ (delta << shift);
 	}
 
 
@@ -467,13 +586,11 @@ public class PentagoBitBoard {
 
 		//Extract info from move
 		int player = (int) ((move >> 40) & 1);
-		int smallerQuad = (int) ((move >> 38) & 0b11);
-		int largerQuad = (int) ((move >> 36) & 0b11);
+		int swap = (int) ((move >> 36) & 0b1111);
 		long coord = move & 0b111111111111111111111111111111111111L;
 
-		//Place the coordinate based on player
-		this.pieces[player] = this.pieces[player] | coord;
-		this.swapQuadrants(smallerQuad, largerQuad);
+		//Place the coordinate based on player and swap
+		this.placeAndSwap(player, coord, swap);
 		this.turnNumber++;
 
 		this.updateWinner();
@@ -485,25 +602,25 @@ public class PentagoBitBoard {
 
 	/**
 	 * Reverses the effect of a recently placed move. Note that legality is not checked for efficiency as it is assumed
-	 * that the move to reverse was most recently applied
+	 * that the move to reverse was most recently applied (to a state where the game wasn't over)
 	 * @param move the move to undo
 	 */
 	void undoMove(long move) {
 
 		//Extract info from move
 		int player = (int) ((move >> 40) & 1);
-		int smallerQuad = (int) ((move >> 38) & 0b11);
-		int largerQuad = (int) ((move >> 36) & 0b11);
+		int swap = (int) ((move >> 36) & 0b1111);
 		long coord = move & 0b111111111111111111111111111111111111L;
 
 		// Re-swap the quadrants
-		this.swapQuadrants(smallerQuad, largerQuad);
+		this.swapQuadrants(swap);
 
 		// Undo the placement
 		this.pieces[player] = this.pieces[player] & ~coord;
 		this.turnNumber--;
 
-		this.updateWinner();
+		// Moves are only ever applied to states where the game isn't over, so nobody had won before this move
+		this.winner = NOBODY;
 
 		this.turnPlayer = (byte) (1 - this.turnPlayer);
 	}
@@ -532,14 +649,63 @@ public class PentagoBitBoard {
 	 * @return true if turnPlayer has five pieces in a row, false otherwise
 	 */
 	private boolean checkWin(byte turnPlayer) {
-		for(long mask: WINNING_MASKS) {
-			if((mask & this.pieces[turnPlayer]) == mask) {
+		return hasFiveInARow(this.pieces[turnPlayer]);
+	}
+
+	/**
+	 * Finds lines of five with shifts instead of testing each of the WINNING_MASKS: for each direction, ANDing the
+	 * pieces shifted by 0 to 4 steps leaves a bit set at the start of every line of five, which is then masked to the
+	 * starts that don't wrap around the edge of the board.
+	 * @param pieces the pieces of one player
+	 * @return true if the pieces contain five in a row
+	 */
+	static boolean hasFiveInARow(long pieces) {
+		if(Long.bitCount(pieces) < WIN_LENGTH) {
+			return false;
+		}
+
+		for(int direction = 0; direction < LINE_SHIFTS.length; direction++) {
+			int shift = LINE_SHIFTS[direction];
+			long pairs = pieces & (pieces >>> shift);
+			long fours = pairs & (pairs >>> (2 * shift));
+			if((fours & (pieces >>> (4 * shift)) & LINE_STARTS[direction]) != 0) {
 				return true;
 			}
 		}
 		return false;
 	}
 
+	/**
+	 * Finds the empty squares that would complete a line of five, with the same shifts as hasFiveInARow(): for each
+	 * direction and each of the 5 squares of a line, the line starts where the other 4 squares hold pieces and that
+	 * square is empty, and shifting those starts by the square's offset gives the completing squares.
+	 * @param pieces the pieces of one player
+	 * @param empty the empty squares
+	 * @return the empty squares where a placement makes five in a row (ignoring the swap)
+	 */
+	static long completingSquares(long pieces, long empty) {
+		if(Long.bitCount(pieces) < WIN_LENGTH - 1) {
+			return 0;
+		}
+
+		long completing = 0;
+		for(int direction = 0; direction < LINE_SHIFTS.length; direction++) {
+			int shift = LINE_SHIFTS[direction];
+			long start = LINE_STARTS[direction];
+			long pieces1 = pieces >>> shift;
+			long pieces2 = pieces >>> (2 * shift);
+			long pieces3 = pieces >>> (3 * shift);
+			long pieces4 = pieces >>> (4 * shift);
+
+			completing |= empty & pieces1 & pieces2 & pieces3 & pieces4 & start;
+			completing |= (pieces & (empty >>> shift) & pieces2 & pieces3 & pieces4 & start) << shift;
+			completing |= (pieces & pieces1 & (empty >>> (2 * shift)) & pieces3 & pieces4 & start) << (2 * shift);
+			completing |= (pieces & pieces1 & pieces2 & (empty >>> (3 * shift)) & pieces4 & start) << (3 * shift);
+			completing |= (pieces & pieces1 & pieces2 & pieces3 & (empty >>> (4 * shift)) & start) << (4 * shift);
+		}
+		return completing;
+	}
+
 	/**
 	 * Checks if the game is over
 	 * @return true if game is over, false if still ongoing
@@ -548,6 +714,15 @@ public class PentagoBitBoard {
 		return (this.turnNumber >= MAX_TURNS) || this.winner != NOBODY;
 	}
 
+	/**
+	 * @param smallerQuad First quadrant to swap
+	 * @param largerQuad Second quadrant to swap
+	 * @return The quadrant swap shifted into its position in a move long
+	 */
+	private static long swapBits(int smallerQuad, int largerQuad) {
+		return (long) ((smallerQuad << 2) | largerQuad) << 36;
+	}
+
 	/**
 	 * Converts an col, row position to a placement in a bit move.
 	 *
@@ -605,6 +780,117 @@ public class PentagoBitBoard {
 		return new PentagoMove(coordColRow[1], coordColRow[0], Quadrant.values()[smallerQuad], Quadrant.values()[largerQuad], player);
 	}
 
+	/**
+	 * @return 64 bit Zobrist hash of the pieces on the board
+	 */
+	long hash() {
+		return hash(0);
+	}
+
+	/**
+	 * Hashes the board so that all the positions that are symmetric to each other (rotations and reflections of the
+	 * board) have the same hash. The player to move doesn't need to be included since it follows from the number of
+	 * pieces.
+	 * @return the smallest hash of the symmetric positions
+	 */
+	long canonicalHash() {
+		long min = hash(0);
+		for(int symmetry = 1; symmetry < NUM_SYMMETRIES; symmetry++) {
+			min = Math.min(min, hash(symmetry));
+		}
+		return min;
+	}
+
+	/**
+	 * @return the index of a symmetry that transforms the board into the position canonicalHash() is the hash of
+	 */
+	int canonicalSymmetry() {
+		long min = hash(0);
+		int minSymmetry = 0;
+		for(int symmetry = 1; symmetry < NUM_SYMMETRIES; symmetry++) {
+			long hash = hash(symmetry);
+			if(hash < min) {
+				min = hash;
+				minSymmetry = symmetry;
+			}
+		}
+		return minSymmetry;
+	}
+
+	/**
+	 * @param symmetry index of a symmetry
+	 * @return the index of the symmetry that undoes it (only the quarter rotations aren't their own inverse)
+	 */
+	static int inverseSymmetry(int symmetry) {
+		return symmetry == 1 ? 3 : symmetry == 3 ? 1 : symmetry;
+	}
+
+	/**
+	 * Applies one of the board symmetries to a move: the placement goes to the transformed square and each swapped
+	 * quadrant to the quadrant it lands on, so playing the transformed move on the transformed board gives the
+	 * transformed result
+	 * @param move a move long
+	 * @param symmetry index of the symmetry (0 is the identity)
+	 * @return the transformed move
+	 */
+	static long transformMove(long move, int symmetry) {
+		int square = BOARD_SIZE * BOARD_SIZE - 1 - Long.numberOfTrailingZeros(move & BOARD_MASK);
+		int transformed = transformSquare(symmetry, square / BOARD_SIZE, square % BOARD_SIZE);
+		long coord = 1L << (BOARD_SIZE * BOARD_SIZE - 1 - transformed);
+
+		int firstQuad = transformQuadrant(symmetry, (int) (move >>> 38) & 0b11);
+		int secondQuad = transformQuadrant(symmetry, (int) (move >>> 36) & 0b11);
+		long swap = swapBits(Math.min(firstQuad, secondQuad), Math.max(firstQuad, secondQuad));
+
+		return (move & (1L << 40)) | swap | coord;
+	}
+
+	/**
+	 * @param symmetry index of the symmetry
+	 * @param quadrant a quadrant from 0 to 3
+	 * @return the quadrant the symmetry moves it to
+	 */
+	private static int transformQuadrant(int symmetry, int quadrant) {
+		int half = BOARD_SIZE / 2;
+
+		// Any square of the quadrant lands in the transformed quadrant
+		int square = transformSquare(symmetry, (quadrant / 2) * half, (quadrant % 2) * half);
+		return (square / BOARD_SIZE / half) * 2 + (square % BOARD_SIZE) / half;
+	}
+
+	/**
+	 * @param symmetry index of the symmetry to apply before hashing
+	 * @return the Zobrist hash of the board transformed by the symmetry
+	 */
+	private long hash(int symmetry) {
+		long hash = 0;
+		for(int colour = 0; colour < 2; colour++) {
+			int base = (symmetry * 2 + colour) * BOARD_SIZE << BOARD_SIZE;
+			long colourPieces = this.pieces[colour];
+			for(int row = 0; row < BOARD_SIZE; row++) {
+				int rowBits = (int) (colourPieces >>> (BOARD_SIZE * (BOARD_SIZE - 1 - row))) & ((1 << BOARD_SIZE) - 1);
+				hash ^= ZOBRIST_ROWS[base + (row << BOARD_SIZE) + rowBits];
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * @param board state to compare with
+	 * @return true if both states have the same pieces on the board
+	 */
+	boolean hasSamePieces(PentagoBitBoard board) {
+		return this.pieces[WHITE] == board.pieces[WHITE] && this.pieces[BLACK] == board.pieces[BLACK];
+	}
+
+	/**
+	 * @param player WHITE or BLACK
+	 * @return the pieces of the player, unlike getPieces() nothing is copied
+	 */
+	long getPieces(int player) {
+		return this.pieces[player];
+	}
+
 	long[] getPieces() {
 		return this.pieces.clone();
 	}
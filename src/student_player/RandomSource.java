@@ -0,0 +1,23 @@
+package student_player;
+
+/**
+ * Source of random numbers for the search. Implementations are not thread safe, each search thread owns its own so
+ * rollouts never contend on a shared seed. A single call to nextLong() gives 64 random bits that callers are free to
+ * split into several fields.
+ */
+interface RandomSource {
+
+	/**
+	 * @return 64 uniformly random bits
+	 */
+	long nextLong();
+
+	/**
+	 * Scales the upper 32 bits of a draw to the bound (multiply and keep the high bits rather than a division)
+	 * @param bound upper bound (exclusive), must be positive
+	 * @return a random int between 0 (inclusive) and bound (exclusive)
+	 */
+	default int nextInt(int bound) {
+		return (int) (((nextLong() >>> 32) * bound) >>> 32);
+	}
+}
@@ -0,0 +1,35 @@
+package student_player;
+
+/**
+ * The default policy used to pick the moves of MCTS rollouts
+ */
+enum RolloutPolicy {
+
+	/**
+	 * Uniformly random moves, the cheapest playouts
+	 */
+	RANDOM {
+		@Override
+		long nextMove(PentagoBitBoard state, RandomSource random) {
+			return state.getRandomMove(random);
+		}
+	},
+
+	/**
+	 * Takes immediate wins, blocks lines the opponent could complete and favours the quadrant centers, see
+	 * PentagoBitBoard.getInformedMove(). Slower playouts that look more like real games.
+	 */
+	INFORMED {
+		@Override
+		long nextMove(PentagoBitBoard state, RandomSource random) {
+			return state.getInformedMove(random);
+		}
+	};
+
+	/**
+	 * @param state the state of the rollout
+	 * @param random the search thread's random number generator
+	 * @return the next move of the rollout
+	 */
+	abstract long nextMove(PentagoBitBoard state, RandomSource random);
+}
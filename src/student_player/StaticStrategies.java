@@ -1,11 +1,10 @@
 package student_player;
 
-import java.util.ArrayList;
-
 import static pentago_swap.PentagoBoardState.BLACK;
 import static pentago_swap.PentagoBoardState.WHITE;
+import static student_player.PentagoBitBoard.CENTER_MASK;
 import static student_player.PentagoBitBoard.QUAD_SWAPS;
-import static student_player.StudentPlayer.rng;
+import static student_player.PentagoBitBoard.SWAP_BITS;
 
 /**
  * This class contains static strategies that are applied before MCTS
@@ -15,15 +14,18 @@ class StaticStrategies {
 	/**
 	 * Tries to play an winning move from the current state
 	 * @param bitBoardState current state of the game
+	 * @param moves buffer to generate the legal moves into (reused between calls), room for MAX_MOVES entries
 	 * @return a winning move if found, 0 otherwise
 	 */
-	static long checkOffensiveMove(PentagoBitBoard bitBoardState) {
+	static long checkOffensiveMove(PentagoBitBoard bitBoardState, long[] moves) {
 
     	PentagoBitBoard bitBoardStateClone = (PentagoBitBoard) bitBoardState.clone();
 
     	byte player = bitBoardStateClone.getTurnPlayer();
 
-    	for(long move : bitBoardStateClone.getAllLegalNonSymmetricMoves()) {
+    	int numMoves = bitBoardStateClone.getAllLegalNonSymmetricMoves(moves);
+    	for(int i = 0; i < numMoves; i++) {
+    		long move = moves[i];
 			bitBoardStateClone.processMove(move);
     		if(bitBoardStateClone.getWinner() == player) {
     			return move;
@@ -37,9 +39,10 @@ class StaticStrategies {
 	/**
 	 * Tries to block an opponent from winning from the current state
 	 * @param bitBoardState Current state of the game
+	 * @param moves buffer to generate the legal moves into (reused between calls), room for MAX_MOVES entries
 	 * @return an effective defensive move if found, 0 otherwise
 	 */
-	static long checkDefensiveMove(PentagoBitBoard bitBoardState) {
+	static long checkDefensiveMove(PentagoBitBoard bitBoardState, long[] moves) {
 
 		PentagoBitBoard bitBoardStateClone = (PentagoBitBoard) bitBoardState.clone();
 
@@ -47,7 +50,7 @@ class StaticStrategies {
 		bitBoardStateClone.togglePlayer();
 
     	// Try to win as opponent
-		long opponentMove = checkOffensiveMove(bitBoardStateClone);
+		long opponentMove = checkOffensiveMove(bitBoardStateClone, moves);
 		bitBoardStateClone.togglePlayer();
 		if(opponentMove != 0) {
 			// We'll put a piece where the opponent would have to win
@@ -61,7 +64,7 @@ class StaticStrategies {
 
 				long defensiveMove = (defensivePlacement & quadrantClearMask) | smallerQuad | largerQuad;
 				bitBoardState.processMove(defensiveMove);
-				long opponentCounterMeasure = checkOffensiveMove(bitBoardStateClone);
+				long opponentCounterMeasure = checkOffensiveMove(bitBoardStateClone, moves);
 				bitBoardState.undoMove(defensiveMove);
 
 				// Opponent can't win, found an effective defensive move!
@@ -80,24 +83,25 @@ class StaticStrategies {
 	 * piece. Thus towards the beginning of the game, it can be advantageous to occupy them before the opponent does
 	 *
 	 * @param bitBoardState current state of the game
+	 * @param random random number generator to pick among the center placements
+	 * @param centerMoves buffer to generate the center placements into (reused between calls), room for MAX_MOVES
+	 *                    entries
 	 * @return a center placement with a random swap if avaialble, 0 otherwise
 	 */
-	static long checkCenterPlacement(PentagoBitBoard bitBoardState) {
+	static long checkCenterPlacement(PentagoBitBoard bitBoardState, RandomSource random, long[] centerMoves) {
 
-		long centerMask = 0b000000010010000000000000010010000000L;
-		long[] pieces = bitBoardState.getPieces();
-		long availableMask = ~(pieces[WHITE] | pieces[BLACK]) & centerMask;
+		long availableMask = ~(bitBoardState.getPieces(WHITE) | bitBoardState.getPieces(BLACK)) & CENTER_MASK;
 
 		// Check if we can place a move on a center piece
-		ArrayList<Long> centerMoves = bitBoardState.getAllLegalMoves(availableMask, QUAD_SWAPS, 4 * QUAD_SWAPS.length);
+		int numCenterMoves = bitBoardState.getAllLegalMoves(availableMask, SWAP_BITS, centerMoves, 0);
 
 		// No center moves available
-		if(centerMoves.size() == 0) {
+		if(numCenterMoves == 0) {
 			return 0;
 		}
 
 		// Return a random center move
-		return centerMoves.get(rng.nextInt(centerMoves.size()));
+		return centerMoves[random.nextInt(numCenterMoves)];
 	}
 
 }
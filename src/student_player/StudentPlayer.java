@@ -5,17 +5,86 @@ import pentago_swap.PentagoBoardState;
 import pentago_swap.PentagoPlayer;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static student_player.PentagoBitBoard.MAX_MOVES;
 import static student_player.PentagoBitBoard.longToPentagoMove;
 
 /** A player file submitted by a student. */
 public class StudentPlayer extends PentagoPlayer {
 
-	// Create a single random number generator for the program
-	static Random rng = new Random();
+    // Maximum number of UCT nodes, can be overridden with -Dstudent_player.treeNodes=n
+    private static final int TREE_CAPACITY = Integer.getInteger("student_player.treeNodes", 1 << 22);
 
-    private static final int TIMEOUT = 1000;
+    // Number of search threads, can be overridden with -Dstudent_player.threads=n
+    private static final int NUM_THREADS = Math.max(1, Integer.getInteger("student_player.threads", 1));
+
+    // With -Dstudent_player.parallelism=root each thread grows its own tree and the root statistics are added up at the
+    // end, otherwise (tree parallelism) all the threads share one tree
+    private static final boolean ROOT_PARALLEL = "root".equals(System.getProperty("student_player.parallelism"));
+
+    // With -Dstudent_player.transpositions=true the statistics of positions reached by different move orders (or
+    // symmetric to each other) are shared through a table of -Dstudent_player.ttEntries=n entries
+    private static final boolean TRANSPOSITIONS = Boolean.getBoolean("student_player.transpositions");
+    private static final int TABLE_ENTRIES = Integer.getInteger("student_player.ttEntries", 1 << 20);
+
+    // Number of rollouts played in lockstep from each leaf, can be overridden with -Dstudent_player.playouts=n
+    private static final int PLAYOUTS_PER_LEAF = Math.max(1, Integer.getInteger("student_player.playouts", 1));
+
+    // Rollouts take wins, block and favour centers unless -Dstudent_player.rollout=random, which plays uniformly random
+    // moves (only random rollouts are batched, informed ones are always one per leaf)
+    private static final RolloutPolicy ROLLOUT_POLICY = "random".equals(System.getProperty("student_player.rollout"))
+            ? RolloutPolicy.RANDOM : RolloutPolicy.INFORMED;
+
+    // With -Dstudent_player.rolloutPlies=n rollouts stop after n moves and back up the Evaluator's win probability
+    // instead of playing to the end of the game (they are then never batched)
+    private static final int ROLLOUT_PLIES = Math.max(0, Integer.getInteger("student_player.rolloutPlies", 0));
+
+    // Progressive widening factor: a node with n visits gets up to factor * sqrt(n) children, best first. Can be
+    // overridden with -Dstudent_player.widening=x, 0 expands every child of a node at once.
+    private static final double WIDENING = Math.max(0,
+            Double.parseDouble(System.getProperty("student_player.widening", "2")));
+
+    // With -Dstudent_player.rave=k the value of a node blends in all-moves-as-first statistics (RAVE), k is the number
+    // of visits at which they weigh about as much as the node's own statistics. 0 turns RAVE off.
+    private static final double RAVE_EQUIVALENCE = Math.max(0,
+            Double.parseDouble(System.getProperty("student_player.rave", "0")));
+
+    // From this turn number on the endgame solver tries to prove the result of the game for part of the move time
+    // before MCTS runs, can be overridden with -Dstudent_player.solverTurn=n
+    private static final int SOLVER_TURN = Integer.getInteger("student_player.solverTurn", 24);
+    private static final int SOLVER_ENTRIES = 1 << 20;
+
+    // Seed of the random number generators, set it with -Dstudent_player.seed=n to repeat the same random choices (the
+    // searches themselves still depend on timing)
+    private static final long SEED = Long.getLong("student_player.seed", System.nanoTime());
+
+    // Time the search is given between the checks of the time manager
+    private static final int CHECK_INTERVAL = 20;
+
+    private final TimeManager timeManager = new TimeManager();
+
+    // Preallocated on the first move and reused for every search after that
+    private UCTTree[] trees;
+    private TranspositionTable table;
+    private MCTSWorker[] workers;
+    private ExecutorService executor;
+    private EndgameSolver solver;
+    private OpeningBook book;
+
+    // Used on this thread, each worker has its own generator seeded from this one
+    private final RandomSource random = new Xoshiro256(SEED);
+
+    // Move buffer of the static strategies
+    private final long[] moveBuffer = new long[MAX_MOVES];
+
+    // State and move of our last turn, used to find where the opponent's reply leaves the tree
+    private PentagoBitBoard previousState;
+    private long previousMove;
 
 
     /**
@@ -37,124 +106,369 @@ public class StudentPlayer extends PentagoPlayer {
 
     	// ----------- Setup -----------
     	long startTime = System.currentTimeMillis();
-    	long endTime = startTime + TIMEOUT;
 
     	// Covert to my bitboard
     	PentagoBitBoard bitBoardState = new PentagoBitBoard(boardState);
+    	timeManager.startMove(startTime, bitBoardState.getTurnNumber());
 
     	//------------ Static Strategies ------------
 
     	// Checks when a win/loss becomes possible
     	if(bitBoardState.getTurnNumber() >= 7) {
     		// If there is a next move that guarantees a move, ignore MCTS and play it
-    		long winningMove = StaticStrategies.checkOffensiveMove(bitBoardState);
+    		long winningMove = StaticStrategies.checkOffensiveMove(bitBoardState, moveBuffer);
     		if(winningMove != 0) {
     			System.out.println("Found a winning move!");
-				return longToPentagoMove(winningMove);
+				return playMove(bitBoardState, winningMove, false);
 			}
 
     		// If there is a next move that blocks an opponent from winning, ignore MCTS and play it
 			// TODO some moves still allow the opponent to win
-    		long defensiveMove = StaticStrategies.checkDefensiveMove(bitBoardState);
+    		long defensiveMove = StaticStrategies.checkDefensiveMove(bitBoardState, moveBuffer);
     		if(defensiveMove != 0) {
 				System.out.println("Found a defensive move!");
-				return longToPentagoMove(defensiveMove);
+				return playMove(bitBoardState, defensiveMove, false);
+			}
+		}
+
+		//------------ Opening Book ------------
+
+		// The first move has a much longer time limit, most of which goes into a deep search that the book is built
+		// from, so the next opening moves are answered right away
+		if(book == null && bitBoardState.getTurnNumber() < 2) {
+			return playMove(bitBoardState, buildBook(bitBoardState), true);
+		}
+
+		if(book != null) {
+			long bookMove = book.getMove(bitBoardState);
+			if(bookMove != 0) {
+				System.out.println("Found a book move!");
+				return playMove(bitBoardState, bookMove, false);
 			}
 		}
 
     	// Towards beginning occupy as many centers as possible
 		if(bitBoardState.getTurnNumber() < 3) {
-			long centerMove = StaticStrategies.checkCenterPlacement(bitBoardState);
+			long centerMove = StaticStrategies.checkCenterPlacement(bitBoardState, random, moveBuffer);
 			if(centerMove != 0) {
 				System.out.println("Found a center placement!");
-				return longToPentagoMove(centerMove);
+				return playMove(bitBoardState, centerMove, false);
+			}
+		}
+
+		//------------ Endgame Solver ------------
+
+		boolean solverRan = false;
+		if(bitBoardState.getTurnNumber() >= SOLVER_TURN) {
+			if(solver == null) {
+				solver = new EndgameSolver(SOLVER_ENTRIES);
+			}
+			solverRan = true;
+
+			// A proven loss is left to MCTS which still picks the move most likely to trip up the opponent
+			if(solver.solve(bitBoardState, timeManager.getSolverEnd()) && solver.getValue() != EndgameSolver.LOSS) {
+				System.out.println(solver.getValue() == EndgameSolver.WIN ? "Proved a win!" : "Proved a draw!");
+				return playMove(bitBoardState, solver.getBestMove(), false);
 			}
 		}
 
     	//------------ Begin MCTS ------------
 
-    	UCTNode root = new UCTNode(0L);
+		prepareSearch(bitBoardState, solverRan);
+		runWorkers(false);
+
+		long finalSelection = getMaxSimsRootMove(bitBoardState);
+		int numSims = 0;
+		for(UCTTree tree : trees) {
+			numSims += tree.getNumSims(UCTTree.ROOT);
+		}
+		System.out.println("Number of simulations: " + numSims);
+		return playMove(bitBoardState, finalSelection, true);
+    }
+
+	/**
+	 * Remembers the move played so the tree can be reused on the next turn
+	 * @param bitBoardState the current state of the game
+	 * @param move the move chosen
+	 * @param searched whether the trees were searched from the current state on this turn, otherwise their roots are
+	 *                 still an older position and the next search can't reuse them
+	 * @return the move to send to the server
+	 */
+	private Move playMove(PentagoBitBoard bitBoardState, long move, boolean searched) {
+		previousState = searched ? bitBoardState : null;
+		previousMove = move;
+		Move pentagoMove = longToPentagoMove(move);
+		timeManager.endMove(System.currentTimeMillis());
+		return pentagoMove;
+	}
+
+	/**
+	 * Builds the opening book from a search of the first move that runs until the time manager's book end
+	 * @param bitBoardState the current state of the game
+	 * @return the move to play
+	 */
+	private long buildBook(PentagoBitBoard bitBoardState) {
+		prepareSearch(bitBoardState, false);
+		runWorkers(true);
+
+		book = new OpeningBook();
+		book.add(trees[0], bitBoardState, bitBoardState.getTurnPlayer());
+		return getMaxSimsRootMove(bitBoardState);
+	}
+
+	/**
+	 * Gets the trees and workers ready to search the current state
+	 * @param bitBoardState the current state of the game
+	 * @param solverRan whether the endgame solver ran on this move and has proofs for the root children
+	 */
+	private void prepareSearch(PentagoBitBoard bitBoardState, boolean solverRan) {
+		if(workers == null) {
+			createWorkers();
+		}
+
+		if(table != null) {
+			table.newSearch();
+		}
+
+		// Fully expand the roots before starting so every tree has a child for each root move
+		for(int i = 0; i < workers.length; i++) {
+			UCTTree tree = trees[i % trees.length];
+			if(i < trees.length) {
+				reuseTree(tree, bitBoardState);
+			}
+			workers[i].prepare(tree, bitBoardState, timeManager.getHardEnd(), ROLLOUT_POLICY);
+			if(i < trees.length) {
+				workers[i].expandNode(UCTTree.ROOT, bitBoardState);
+				if(solverRan) {
+					injectProofs(tree, bitBoardState);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps the part of the tree built on the previous turn that is still reachable: the child for the move we played
+	 * and then the grandchild for the opponent's reply (found by comparing the positions) becomes the new root. If the
+	 * current state wasn't searched on the previous turn the tree is cleared instead.
+	 * @param tree the tree to reuse
+	 * @param bitBoardState the current state of the game
+	 */
+	private void reuseTree(UCTTree tree, PentagoBitBoard bitBoardState) {
+		int newRoot = -1;
 
-		while (System.currentTimeMillis() < endTime) {
-			//----------- Descent phase -----------
-			UCTNode promisingNode = selectPromisingNode(root);
+		if(previousState != null) {
+			int child = tree.getChild(UCTTree.ROOT, previousMove);
+			if(child != UCTTree.NONE) {
+				PentagoBitBoard state = (PentagoBitBoard) previousState.clone();
+				state.processMove(previousMove);
 
-			//----------- Growth phase ------------
-			PentagoBitBoard promisingState = promisingNode.getState(bitBoardState);
-			if(!promisingState.gameOver()) {
-				expandNode(promisingNode, promisingState);
+				int first = tree.getFirstChild(child);
+				for(int grandchild = first; grandchild != UCTTree.NONE; grandchild = tree.getNextSibling(grandchild)) {
+					state.processMove(tree.getMove(grandchild));
+					boolean found = state.hasSamePieces(bitBoardState);
+					state.undoMove(tree.getMove(grandchild));
+					if(found) {
+						newRoot = grandchild;
+						break;
+					}
+				}
 			}
+		}
+
+		if(newRoot == -1) {
+			tree.reset();
+		} else {
+			tree.promote(newRoot);
+		}
+	}
+
+	/**
+	 * Marks the root children whose positions the endgame solver proved as proven in the tree so MCTS doesn't waste
+	 * simulations on them (MCTS-Solver)
+	 * @param tree the tree searched from the current state
+	 * @param bitBoardState the current state of the game
+	 */
+	private void injectProofs(UCTTree tree, PentagoBitBoard bitBoardState) {
+		PentagoBitBoard state = (PentagoBitBoard) bitBoardState.clone();
+		int first = tree.getFirstChild(UCTTree.ROOT);
+		for(int child = first; child != UCTTree.NONE; child = tree.getNextSibling(child)) {
+			long move = tree.getMove(child);
+			state.processMove(move);
 
-			//----------- Rollout phase -----------
-			UCTNode nodeToExplore = promisingNode;
-			if(promisingNode.hasChildren()) {
-				nodeToExplore = promisingNode.getRandomChild();
+			// The solver's values are for the opponent, who is to move at the child
+			int value = state.gameOver() ? EndgameSolver.UNKNOWN : solver.getProvenValue(state);
+			if(value == EndgameSolver.WIN) {
+				tree.setProven(child, UCTTree.PROVEN_LOSS);
+			} else if(value == EndgameSolver.LOSS) {
+				tree.setProven(child, UCTTree.PROVEN_WIN);
+			} else if(value == EndgameSolver.DRAW) {
+				tree.setProven(child, UCTTree.PROVEN_DRAW);
 			}
-			byte[] result = simulateRandomPlayout(nodeToExplore, bitBoardState);
 
-			//----------- Update phase -----------
-			nodeToExplore.backPropagate(result);
+			state.undoMove(move);
 		}
+	}
 
-		UCTNode finalSelection = root.getMaxSimsChild();
-		System.out.println("Number of simulations: " + root.getNumSims()/2);
-		return longToPentagoMove(finalSelection.getMove());
-    }
+	/**
+	 * Allocates the trees and search workers, done on the first move so the constructor stays cheap
+	 */
+	private void createWorkers() {
+		if(TRANSPOSITIONS) {
+			table = new TranspositionTable(TABLE_ENTRIES);
+		}
+
+		// All the trees share the table
+		int numTrees = ROOT_PARALLEL ? NUM_THREADS : 1;
+		trees = new UCTTree[numTrees];
+		for(int i = 0; i < numTrees; i++) {
+			trees[i] = new UCTTree(TREE_CAPACITY / numTrees, table, RAVE_EQUIVALENCE);
+		}
+
+		workers = new MCTSWorker[NUM_THREADS];
+		for(int i = 0; i < NUM_THREADS; i++) {
+			workers[i] = new MCTSWorker(new Xoshiro256(random.nextLong()), PLAYOUTS_PER_LEAF, ROLLOUT_PLIES, WIDENING);
+		}
+
+		if(NUM_THREADS > 1) {
+			executor = Executors.newFixedThreadPool(NUM_THREADS - 1, runnable -> {
+				Thread thread = new Thread(runnable, "mcts-worker");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
 
 	/**
-	 * Performs the descent step of MCTS
-	 * @param root Root node of UCT
-	 * @return the most promising node to expand/explore
+	 * Runs the first worker on this thread and the others on the executor, returns once they have all finished
+	 * @param untilBookEnd whether to search until the time manager's book end instead of letting it stop the search
 	 */
-	private UCTNode selectPromisingNode(UCTNode root) {
-		UCTNode currentNode = root;
-
-		while (currentNode.hasChildren()) {
-			double maxValue = Double.MIN_VALUE;
-			int maxIndex = -1;
-
-			for(int i = 0; i < currentNode.getChildren().length; i++) {
-				double value = currentNode.getChildren()[i].getStateValue();
-				if(value > maxValue) {
-					maxValue = value;
-					maxIndex = i;
+	private void runWorkers(boolean untilBookEnd) {
+		int rootSims = 0;
+		for(UCTTree tree : trees) {
+			rootSims += tree.getNumSims(UCTTree.ROOT);
+		}
+		timeManager.startSearch(System.currentTimeMillis(), rootSims);
+
+		List<Future<?>> futures = new ArrayList<>(workers.length - 1);
+		for(int i = 1; i < workers.length; i++) {
+			futures.add(executor.submit(workers[i]));
+		}
+
+		// This thread searches between checks of the time manager, which stops the other workers when it is done
+		while(true) {
+			long now = System.currentTimeMillis();
+			long endTime = untilBookEnd ? timeManager.getBookEnd() : checkTime(now);
+			if(now >= endTime || rootFull()) {
+				for(MCTSWorker worker : workers) {
+					worker.stop();
 				}
+				break;
+			}
+			workers[0].runUntil(Math.min(endTime, now + CHECK_INTERVAL));
+		}
+
+		for(Future<?> future : futures) {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Search thread failed", e.getCause());
 			}
+		}
+	}
 
-			currentNode = currentNode.getChildren()[maxIndex];
+	/**
+	 * The roots of every tree are counted together so the totals added up over the trees can't overflow either
+	 * @return true if the roots have as many simulations as a node can safely count, see UCTTree.MAX_SIMS
+	 */
+	private boolean rootFull() {
+		long rootSims = 0;
+		for(UCTTree tree : trees) {
+			rootSims += tree.getNumSims(UCTTree.ROOT);
 		}
-		return currentNode;
+		return rootSims >= UCTTree.MAX_SIMS;
 	}
 
 	/**
-	 * Performs the expansion stage of MCTS
-	 * @param growthNode UCTNode to expand
-	 * @param startState the current state of the game
+	 * Gives the time manager the progress of the search
+	 * @param now current time in milliseconds
+	 * @return the time at which the search should stop
 	 */
-	private void expandNode(UCTNode growthNode, PentagoBitBoard startState) {
-		ArrayList<Long> availableMoves = growthNode.getState(startState).getAllLegalNonSymmetricMoves();
-		UCTNode[] children = new UCTNode[availableMoves.size()];
-		for(int i = 0; i < availableMoves.size(); i++) {
-			UCTNode child = new UCTNode(availableMoves.get(i));
-			child.setParent(growthNode);
-			children[i] = child;
-		}
-		growthNode.setChildren(children);
+	private long checkTime(long now) {
+		long bestMove = 0;
+		int bestSims = 0;
+		int secondSims = 0;
+		int rootSims = 0;
+
+		int first = trees[0].getFirstChild(UCTTree.ROOT);
+		for(int rootChild = first; rootChild != UCTTree.NONE; rootChild = trees[0].getNextSibling(rootChild)) {
+			long move = trees[0].getMove(rootChild);
+			int numSims = 0;
+			for(UCTTree tree : trees) {
+				int child = tree.getChild(UCTTree.ROOT, move);
+				if(child == UCTTree.NONE) {
+					continue;
+				}
+				if(tree.getProven(child) == UCTTree.PROVEN_WIN) {
+					// Nothing left to decide
+					return now;
+				}
+				numSims += tree.getNumSims(child);
+			}
+
+			rootSims += numSims;
+			if(numSims > bestSims) {
+				secondSims = bestSims;
+				bestSims = numSims;
+				bestMove = move;
+			} else if(numSims > secondSims) {
+				secondSims = numSims;
+			}
+		}
+		return timeManager.update(now, bestMove, bestSims, secondSims, rootSims);
 	}
 
 	/**
-	 * Performs a default policy simulation
-	 * @param start Start UCTNode
-	 * @param startState the current state of the game
-	 * @return Results of the game (and who was last to play)
+	 * Finds the root move with the most simulations, adding up the simulations of every tree when searching with
+	 * root parallelism. A move proven to win is played right away and moves proven to lose are only played if there
+	 * is nothing else. A tree whose root couldn't be expanded for lack of space is left out, and a random move is
+	 * played if the first tree has no root children at all.
+	 * @param bitBoardState the current state of the game
+	 * @return the most promising move
 	 */
-	private byte[] simulateRandomPlayout(UCTNode start, PentagoBitBoard startState) {
+	private long getMaxSimsRootMove(PentagoBitBoard bitBoardState) {
+		int maxSims = Integer.MIN_VALUE;
+		long maxMove = 0;
+		boolean maxLost = true;
 
-		PentagoBitBoard state = start.getState(startState);
-		while(!state.gameOver()) {
-			state.processMove(state.getRandomMove());
+		// Every expanded tree has a child for each root move but not necessarily in the same order
+		int first = trees[0].getFirstChild(UCTTree.ROOT);
+		for(int rootChild = first; rootChild != UCTTree.NONE; rootChild = trees[0].getNextSibling(rootChild)) {
+			long move = trees[0].getMove(rootChild);
+			int numSims = 0;
+			boolean lost = false;
+			for(UCTTree tree : trees) {
+				int child = tree.getChild(UCTTree.ROOT, move);
+				if(child == UCTTree.NONE) {
+					continue;
+				}
+				if(tree.getProven(child) == UCTTree.PROVEN_WIN) {
+					return tree.getMove(child);
+				}
+				lost |= tree.getProven(child) == UCTTree.PROVEN_LOSS;
+				numSims += tree.getNumSims(child);
+			}
+			if(lost && !maxLost) {
+				continue;
+			}
+			if(numSims > maxSims || maxLost && !lost) {
+				maxLost = lost;
+				maxSims = numSims;
+				maxMove = move;
+			}
 		}
-		// Returns who won and who was last to play
-		return new byte[] {state.getWinner(), state.getOpponent()};
+
+		return maxMove != 0 ? maxMove : bitBoardState.getRandomMove(random);
 	}
-}
\ No newline at end of file
+}
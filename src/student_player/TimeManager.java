@@ -0,0 +1,171 @@
+package student_player;
+
+import boardgame.Server;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Plans how long each move may take. The server gives each player FIRST_MOVE_TIMEOUT for its first move and
+ * DEFAULT_TIMEOUT for every other move, and a move must reach the server before the limit. Each move has:
+ * <ul>
+ *     <li>a hard end, the limit less a safety margin, which the search never goes past</li>
+ *     <li>a soft end halfway there, where the search normally stops</li>
+ * </ul>
+ * While the search runs, update() is given the root statistics. The search stops early once the runner-up can't
+ * catch up with the most simulated move in the time left, and goes on towards the hard end while the decision is
+ * unstable (the best move changed recently or is barely ahead).
+ *
+ * The safety margin grows with the worst delays measured so far: the time from the end of the search to the move
+ * being returned, and the average garbage collection pause during a move.
+ */
+class TimeManager {
+
+	// Covers the delays we can't measure: the server's timer, the network and thread scheduling
+	private static final int BASE_MARGIN = 250;
+
+	// Fraction of the time before the hard end that the search normally takes
+	private static final double SOFT_FRACTION = 0.5;
+
+	// The decision is unstable if the best move changed within this fraction of the soft time or leads the runner-up
+	// by less than UNSTABLE_LEAD
+	private static final double UNSTABLE_CHANGE = 0.25;
+	private static final double UNSTABLE_LEAD = 1.2;
+
+	// Fraction of the soft time the search runs before it can stop early, enough to measure its speed
+	private static final double MIN_SEARCH_FRACTION = 0.1;
+
+	// Fraction of the time before the hard end spent building the opening book on the first move
+	private static final double BOOK_FRACTION = 0.75;
+
+	private final GarbageCollectorMXBean[] collectors =
+			ManagementFactory.getGarbageCollectorMXBeans().toArray(new GarbageCollectorMXBean[0]);
+
+	// Worst delays measured so far
+	private long maxLatency;
+	private long maxGcPause;
+
+	// Plan of the current move
+	private long startTime;
+	private long softEnd;
+	private long hardEnd;
+	private long stopTime;
+	private long gcTime;
+	private long gcCount;
+
+	// Progress of the current search
+	private long searchStart;
+	private int searchStartSims;
+	private long bestMove;
+	private long lastChange;
+
+	/**
+	 * Plans a move
+	 * @param startTime time in milliseconds at which the move was requested
+	 * @param turnNumber turn number of the bitboard (each player's first move is turn 0 or 1)
+	 */
+	void startMove(long startTime, int turnNumber) {
+		int limit = turnNumber < 2 ? Server.FIRST_MOVE_TIMEOUT : Server.DEFAULT_TIMEOUT;
+		long margin = Math.min(BASE_MARGIN + 2 * (this.maxLatency + this.maxGcPause), limit / 2);
+
+		this.startTime = startTime;
+		this.hardEnd = startTime + limit - margin;
+		this.softEnd = startTime + (long) ((limit - margin) * SOFT_FRACTION);
+		this.stopTime = -1;
+		this.gcTime = totalGcTime();
+		this.gcCount = totalGcCount();
+	}
+
+	/**
+	 * @return time at which a search that runs before MCTS (the endgame solver) has to give up
+	 */
+	long getSolverEnd() {
+		return this.startTime + (this.softEnd - this.startTime) / 2;
+	}
+
+	/**
+	 * @return time at which the search that builds the opening book stops, it isn't stopped early
+	 */
+	long getBookEnd() {
+		return this.startTime + (long) ((this.hardEnd - this.startTime) * BOOK_FRACTION);
+	}
+
+	/**
+	 * @return time past which no search may run
+	 */
+	long getHardEnd() {
+		return this.hardEnd;
+	}
+
+	/**
+	 * Starts timing the MCTS search of the move
+	 * @param now current time in milliseconds
+	 * @param rootSims simulations at the root before the search (kept from the previous turn)
+	 */
+	void startSearch(long now, int rootSims) {
+		this.searchStart = now;
+		this.searchStartSims = rootSims;
+		this.bestMove = 0;
+		this.lastChange = now;
+	}
+
+	/**
+	 * Decides when the search should stop given its progress
+	 * @param now current time in milliseconds
+	 * @param move the root move with the most simulations
+	 * @param bestSims simulations of that move
+	 * @param secondSims simulations of the runner-up
+	 * @param rootSims simulations at the root
+	 * @return the time at which the search should stop, at most now if it should stop right away
+	 */
+	long update(long now, long move, int bestSims, int secondSims, int rootSims) {
+		if(move != this.bestMove) {
+			this.bestMove = move;
+			this.lastChange = now;
+		}
+
+		boolean unstable = now - this.lastChange < UNSTABLE_CHANGE * (this.softEnd - this.searchStart)
+				|| bestSims < UNSTABLE_LEAD * secondSims;
+		long end = unstable ? this.hardEnd : this.softEnd;
+
+		// Even if every remaining simulation went to the runner-up it couldn't overtake the best move
+		double rate = (rootSims - this.searchStartSims) / (double) Math.max(1, now - this.searchStart);
+		boolean measured = now - this.searchStart >= MIN_SEARCH_FRACTION * (this.softEnd - this.searchStart);
+		if(now >= end || measured && bestSims - secondSims > rate * (end - now)) {
+			this.stopTime = Math.min(now, end);
+			return this.stopTime;
+		}
+		return end;
+	}
+
+	/**
+	 * Measures the delays of the move that was just made
+	 * @param returnTime time at which the move was returned
+	 */
+	void endMove(long returnTime) {
+		if(this.stopTime >= 0) {
+			this.maxLatency = Math.max(this.maxLatency, returnTime - this.stopTime);
+		}
+
+		long collections = totalGcCount() - this.gcCount;
+		if(collections > 0) {
+			this.maxGcPause = Math.max(this.maxGcPause, (totalGcTime() - this.gcTime) / collections);
+		}
+	}
+
+	private long totalGcTime() {
+		long total = 0;
+		for(GarbageCollectorMXBean collector : this.collectors) {
+			total += Math.max(0, collector.getCollectionTime());
+		}
+		return total;
+	}
+
+	private long totalGcCount() {
+		long total = 0;
+		for(GarbageCollectorMXBean collector : this.collectors) {
+			total += Math.max(0, collector.getCollectionCount());
+		}
+		return total;
+	}
+}
@@ -0,0 +1,128 @@
+package student_player;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size hash table of simulation statistics shared by every node that reaches the same position (up to
+ * symmetry, see PentagoBitBoard.canonicalHash()). This lets UCT treat the search space as a graph: a position found
+ * through a different order of moves starts with everything learned about it elsewhere in the tree.
+ *
+ * The table is lock-free. Statistics are packed like in UCTTree (win score in the upper bits, simulations in the
+ * lower bits) and updated with atomic adds. Positions hash to a bucket of two entries, when both are taken the
+ * entry from an older search is replaced first, then the one deeper in the game (it is cheaper to relearn). A thread
+ * racing a replacement can credit one update to the new position, which the statistics easily absorb.
+ */
+class TranspositionTable {
+
+	private static final long EMPTY = 0L;
+
+	private final AtomicLongArray keys;
+	private final AtomicLongArray stats;
+	// Search generation in the upper bits and turn number in the lower 8 bits, only a replacement hint so plain ints
+	private final int[] info;
+	private final int mask;
+
+	private int generation;
+
+	/**
+	 * Preallocates the table
+	 * @param capacity number of entries, rounded up to a power of two
+	 */
+	TranspositionTable(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.keys = new AtomicLongArray(size);
+		this.stats = new AtomicLongArray(size);
+		this.info = new int[size];
+		this.mask = size - 1;
+	}
+
+	/**
+	 * Starts a new search, entries from earlier searches are replaced first
+	 */
+	void newSearch() {
+		this.generation++;
+	}
+
+	/**
+	 * Adds an entry for a position if it is not already in the table
+	 * @param key hash of the position
+	 * @param depth turn number of the position
+	 */
+	void insert(long key, int depth) {
+		key = nonEmpty(key);
+		int bucket = (int) key & this.mask & ~1;
+
+		if(this.keys.get(bucket) == key || this.keys.get(bucket + 1) == key) {
+			return;
+		}
+
+		int victim = bucket;
+		if(replaceFirst(bucket + 1, bucket)) {
+			victim = bucket + 1;
+		}
+
+		this.stats.set(victim, 0L);
+		this.info[victim] = (this.generation << 8) | depth;
+		this.keys.set(victim, key);
+	}
+
+	/**
+	 * Decides which entry of a bucket to replace
+	 * @param a entry of the bucket
+	 * @param b other entry of the bucket
+	 * @return true if a should be replaced before b
+	 */
+	private boolean replaceFirst(int a, int b) {
+		if(this.keys.get(a) == EMPTY || this.keys.get(b) == EMPTY) {
+			return this.keys.get(a) == EMPTY;
+		}
+		int generationA = this.info[a] >>> 8;
+		int generationB = this.info[b] >>> 8;
+		if(generationA != generationB) {
+			return generationA < generationB;
+		}
+		return (this.info[a] & 0xFF) > (this.info[b] & 0xFF);
+	}
+
+	/**
+	 * Adds to the statistics of a position, does nothing if the position is not in the table
+	 * @param key hash of the position
+	 * @param delta packed win score and simulations to add
+	 */
+	void add(long key, long delta) {
+		int entry = find(key);
+		if(entry != -1) {
+			this.stats.addAndGet(entry, delta);
+		}
+	}
+
+	/**
+	 * @param key hash of the position
+	 * @return the packed statistics of the position, 0 if the position is not in the table
+	 */
+	long get(long key) {
+		int entry = find(key);
+		return entry == -1 ? 0L : this.stats.get(entry);
+	}
+
+	/**
+	 * @param key hash of the position
+	 * @return the entry holding the position, -1 if the position is not in the table
+	 */
+	private int find(long key) {
+		key = nonEmpty(key);
+		int bucket = (int) key & this.mask & ~1;
+		if(this.keys.get(bucket) == key) {
+			return bucket;
+		}
+		if(this.keys.get(bucket + 1) == key) {
+			return bucket + 1;
+		}
+		return -1;
+	}
+
+	// 0 marks an empty entry so that hash is moved aside
+	private static long nonEmpty(long key) {
+		return key == EMPTY ? 1L : key;
+	}
+}
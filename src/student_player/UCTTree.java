@@ -0,0 +1,750 @@
+package student_player;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static pentago_swap.PentagoBoardState.BOARD_SIZE;
+import static student_player.PentagoBitBoard.BOARD_MASK;
+import static student_player.PentagoBitBoard.DRAW;
+
+/**
+ * Class representing an Upper Confidence Tree (UCT) for use in Monte Carlo Tree search.
+ * Nodes are not objects, they are indexes into parallel arrays that are allocated once and reused for every search.
+ * This avoids allocating an object per child. Note that in order to save on memory, only moves are stored in each
+ * node. The state at a node is tracked by applying the moves to a working state while descending from the root and
+ * undoing them afterwards.
+ *
+ * A node doesn't need a child for each of its legal moves (progressive widening). The children of a node form a
+ * linked list through nextSibling, so children can be added one at a time as the node gets more visits. Each node
+ * remembers how many legal moves it has so it knows when it is fully expanded.
+ *
+ * The tree can be kept between turns, promote() turns a grandchild of the root into the new root.
+ *
+ * Nodes whose result is known for certain (the game is over or an endgame solver proved it) are marked as proven.
+ * Like MCTS-Solver, proofs are backed up the tree: a node is lost once any child is won for the opponent and won
+ * once every child is lost for the opponent. Descent never enters a proven loss and always takes a proven win.
+ *
+ * Optionally (RAVE), each node also keeps all-moves-as-first statistics: the results of every simulation in which
+ * its move was played by the same player at any later point, not just right away. They are plentiful long before the
+ * node's own statistics are and are blended into its value, with less weight as the node gets visits.
+ *
+ * A tree can be shared by several search threads: statistics are updated atomically, expansion is synchronized and
+ * children are published to other threads by the write to firstChild.
+ */
+class UCTTree {
+
+	static final int ROOT = 0;
+
+	/**
+	 * Longest possible path from the root to a leaf (the root plus a node for each placement)
+	 */
+	static final int MAX_DEPTH = BOARD_SIZE * BOARD_SIZE + 1;
+
+	// Proven results, from the point of view of the player that made the move leading to the node
+	static final byte UNPROVEN = 0;
+	static final byte PROVEN_WIN = 1;
+	static final byte PROVEN_DRAW = 2;
+	static final byte PROVEN_LOSS = 3;
+
+	// No node: the first child of a leaf or the next sibling of the last child
+	static final int NONE = -1;
+
+	// Applied to visit counts, this explores as much as sqrt(2) did when each visit was counted as 2 simulations
+	private static final double EXPLOITATION_PARAM = 1;
+
+	// Score of a won simulation, a draw scores half and a loss 0. Fine enough to back up a fraction of a win from an
+	// evaluated position (see backPropagate()).
+	static final int WIN_SCORE = 64;
+	static final int DRAW_SCORE = WIN_SCORE / 2;
+
+	// Statistics are packed in a long, the number of simulations in the lower SIM_BITS bits and the win score (up to
+	// WIN_SCORE per simulation) in the bits above, so a node can count up to 2^SIM_BITS simulations
+	private static final int SIM_BITS = 29;
+	private static final long SIM_MASK = (1L << SIM_BITS) - 1;
+
+	/**
+	 * Simulations at which a search should stop, half of what a node can count so the simulations run before the
+	 * search notices can't overflow the root
+	 */
+	static final int MAX_SIMS = 1 << (SIM_BITS - 1);
+
+	// Lookup tables for the visit counts below TABLE_SIZE: 1 / sqrt(n) for the exploration term and 1 / (n * WIN_SCORE)
+	// for the win rate. Floats keep both tables within a few KB of cache.
+	private static final int TABLE_SIZE = 1 << 10;
+
+	/**
+	 * Number of longs in each player's set of played moves, see recordMove()
+	 */
+	static final int AMAF_WORDS = (16 * BOARD_SIZE * BOARD_SIZE + 63) / 64;
+	private static final float[] INVERSE_SQRT = new float[TABLE_SIZE];
+	private static final float[] SCORE_RECIPROCALS = new float[TABLE_SIZE];
+
+	static {
+		for(int i = 1; i < TABLE_SIZE; i++) {
+			INVERSE_SQRT[i] = (float) (1 / Math.sqrt(i));
+			SCORE_RECIPROCALS[i] = (float) (1 / (WIN_SCORE * (double) i));
+		}
+	}
+
+	private final long[] move;
+	// Win score and number of simulations packed together (see SIM_BITS) so both are updated together
+	private final AtomicLongArray stats;
+	private final AtomicIntegerArray firstChild;
+	private final int[] nextSibling;
+	// Number of children added so far and number of legal moves once the node is expanded
+	private final short[] childCount;
+	private final short[] moveCount;
+	// A proof never changes once found so racing threads can only write the same value, plain bytes are enough
+	private final byte[] proven;
+
+	// Optional, all-moves-as-first statistics packed like stats, and the RAVE weight of the first TABLE_SIZE visit
+	// counts (see getStateValue())
+	private final AtomicLongArray amaf;
+	private final double raveEquivalence;
+	private final float[] raveWeights;
+
+	// Optional, statistics shared between transpositions (UCT on a graph) and each node's canonical hash (0 until the
+	// node is first visited)
+	private final TranspositionTable table;
+	private final AtomicLongArray key;
+
+	// Used by promote(): one bit per node marking the nodes that are kept, and the number of marked nodes before each
+	// word of marks
+	private final long[] keep;
+	private final int[] keepRank;
+
+	// Number of nodes in use, the next free node is at index size
+	private int size;
+
+	/**
+	 * Preallocates the storage for the tree
+	 * @param capacity maximum number of nodes the tree can hold
+	 * @param table transposition table to share statistics through, null to keep statistics per node only
+	 * @param raveEquivalence number of visits at which a node's own statistics and its all-moves-as-first statistics
+	 *                        have about the same weight, 0 to not keep all-moves-as-first statistics
+	 */
+	UCTTree(int capacity, TranspositionTable table, double raveEquivalence) {
+		this.move = new long[capacity];
+		this.stats = new AtomicLongArray(capacity);
+		this.firstChild = new AtomicIntegerArray(capacity);
+		this.nextSibling = new int[capacity];
+		this.childCount = new short[capacity];
+		this.moveCount = new short[capacity];
+		this.proven = new byte[capacity];
+		this.table = table;
+		this.key = table == null ? null : new AtomicLongArray(capacity);
+		this.raveEquivalence = raveEquivalence;
+		this.amaf = raveEquivalence > 0 ? new AtomicLongArray(capacity) : null;
+		this.raveWeights = new float[this.amaf != null ? TABLE_SIZE : 0];
+		for(int i = 0; i < this.raveWeights.length; i++) {
+			this.raveWeights[i] = (float) raveWeight(i);
+		}
+		this.keep = new long[(capacity + 63) / 64];
+		this.keepRank = new int[this.keep.length];
+		reset();
+	}
+
+	/**
+	 * Discards all the nodes leaving only an empty root. Must not be called while a search is running.
+	 */
+	synchronized void reset() {
+		this.size = 0;
+		allocate(0L);
+	}
+
+	/**
+	 * Makes node the new root keeping the subtree below it (and its statistics) and discarding every other node.
+	 * The kept nodes are slid down to the front of the storage in their current order so every child is still stored
+	 * after its parent, which the marking pass relies on, and the freed space can be reused. Must not be called while a
+	 * search is running.
+	 * @param node the node to promote
+	 */
+	synchronized void promote(int node) {
+
+		// Mark the nodes to keep, children are always stored after their parent so one pass finds the whole subtree
+		Arrays.fill(this.keep, 0, (this.size + 63) / 64, 0L);
+		this.keep[node >>> 6] |= 1L << node;
+		for(int i = node; i < this.size; i++) {
+			if(isKept(i)) {
+				for(int child = this.firstChild.get(i); child != NONE; child = this.nextSibling[child]) {
+					this.keep[child >>> 6] |= 1L << child;
+				}
+			}
+		}
+
+		int kept = 0;
+		for(int word = 0; word < (this.size + 63) / 64; word++) {
+			this.keepRank[word] = kept;
+			kept += Long.bitCount(this.keep[word]);
+		}
+
+		// Slide the kept nodes down, a node never moves up so it is only overwritten after it has been moved
+		for(int i = node; i < this.size; i++) {
+			if(isKept(i)) {
+				int newIndex = newIndex(i);
+				this.move[newIndex] = this.move[i];
+				this.stats.set(newIndex, this.stats.get(i));
+				this.childCount[newIndex] = this.childCount[i];
+				this.moveCount[newIndex] = this.moveCount[i];
+				this.proven[newIndex] = this.proven[i];
+				this.firstChild.set(newIndex, hasChildren(i) ? newIndex(this.firstChild.get(i)) : NONE);
+				// The siblings of the new root are discarded
+				int sibling = i == node ? NONE : this.nextSibling[i];
+				this.nextSibling[newIndex] = sibling == NONE ? NONE : newIndex(sibling);
+				if(this.key != null) {
+					this.key.set(newIndex, this.key.get(i));
+				}
+				if(this.amaf != null) {
+					this.amaf.set(newIndex, this.amaf.get(i));
+				}
+			}
+		}
+
+		this.size = kept;
+	}
+
+	private boolean isKept(int node) {
+		return (this.keep[node >>> 6] & (1L << node)) != 0;
+	}
+
+	/**
+	 * @param node a node marked to be kept by promote()
+	 * @return the index of the node once the kept nodes are slid down
+	 */
+	private int newIndex(int node) {
+		return this.keepRank[node >>> 6] + Long.bitCount(this.keep[node >>> 6] & ((1L << node) - 1));
+	}
+
+	/**
+	 * Initializes the next free node
+	 * @param move the move leading to the node
+	 * @return the index of the new node
+	 */
+	private int allocate(long move) {
+		int node = this.size++;
+		this.move[node] = move;
+		this.stats.set(node, 0);
+		this.firstChild.set(node, NONE);
+		this.nextSibling[node] = NONE;
+		this.childCount[node] = 0;
+		this.moveCount[node] = 0;
+		this.proven[node] = UNPROVEN;
+		if(this.key != null) {
+			this.key.set(node, 0L);
+		}
+		if(this.amaf != null) {
+			this.amaf.set(node, 0L);
+		}
+		return node;
+	}
+
+	/**
+	 * Fully expands a node: adds a child for each move that doesn't have one yet. Does nothing if another thread
+	 * already fully expanded the node.
+	 * @param node the node to expand
+	 * @param moves buffer containing every legal move from the node
+	 * @param numMoves number of moves in the buffer
+	 * @return true if the node is fully expanded, false if the tree is out of space
+	 */
+	synchronized boolean expand(int node, long[] moves, int numMoves) {
+		if(isFullyExpanded(node)) {
+			return true;
+		}
+		if(this.size + numMoves - this.childCount[node] > this.move.length) {
+			return false;
+		}
+
+		boolean partial = hasChildren(node);
+		this.moveCount[node] = (short) numMoves;
+		for(int i = 0; i < numMoves; i++) {
+			if(!partial || getChild(node, moves[i]) == NONE) {
+				addChild(node, moves[i]);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the next child of a node when the node is widened. Does nothing if another thread already added a child
+	 * since childCount was read.
+	 * @param node the node to widen
+	 * @param move the move of the new child
+	 * @param numMoves number of legal moves from the node
+	 * @param childCount number of children the node had when the move was picked
+	 * @return false if the tree is out of space
+	 */
+	synchronized boolean widen(int node, long move, int numMoves, int childCount) {
+		if(this.childCount[node] != childCount) {
+			return true;
+		}
+		if(this.size == this.move.length) {
+			return false;
+		}
+
+		this.moveCount[node] = (short) numMoves;
+		addChild(node, move);
+		return true;
+	}
+
+	/**
+	 * Allocates a child and links it at the head of the node's children. The child is published to other threads by
+	 * the write to firstChild, after its contents.
+	 * @param node the parent
+	 * @param move the move leading to the child
+	 */
+	private void addChild(int node, long move) {
+		int child = allocate(move);
+		this.nextSibling[child] = this.firstChild.get(node);
+		this.firstChild.set(node, child);
+		this.childCount[node]++;
+	}
+
+	/**
+	 * Counts a simulation through node before its result is known. Until the result is backpropagated the
+	 * simulation looks like a loss, which steers other threads sharing the tree away from this node (virtual loss).
+	 * @param node the node being descended through
+	 */
+	void addVisit(int node) {
+		this.stats.addAndGet(node, 1);
+		addToTable(node, 1);
+	}
+
+	/**
+	 * @param node node that was just reached
+	 * @return true if the node's position should be hashed and given to setKey()
+	 */
+	boolean needsKey(int node) {
+		return this.key != null && this.key.get(node) == 0L;
+	}
+
+	/**
+	 * Links a node to the transposition table entry of its position
+	 * @param node the node
+	 * @param hash canonical hash of the node's position
+	 * @param depth turn number of the node's position
+	 */
+	void setKey(int node, long hash, int depth) {
+		hash = hash == 0L ? 1L : hash;
+		this.key.set(node, hash);
+		this.table.insert(hash, depth);
+	}
+
+	/**
+	 * Adds to the statistics shared by all the transpositions of a node's position
+	 * @param node the node
+	 * @param delta packed win score and simulations to add
+	 */
+	private void addToTable(int node, long delta) {
+		if(this.key != null) {
+			long hash = this.key.get(node);
+			if(hash != 0L) {
+				this.table.add(hash, delta);
+			}
+		}
+	}
+
+	/**
+	 * Scores the result of a default policy simulation. Note a win scores WIN_SCORE, a draw DRAW_SCORE and a loss 0.
+	 * Each simulation increments numSims by 1, so the win score divided by WIN_SCORE * numSims stays between 0 and 1.
+	 * @param winner the winner of the simulation
+	 * @param player the player to score the simulation for
+	 * @return the score of the simulation for player
+	 */
+	static int score(byte winner, byte player) {
+		return winner == DRAW ? DRAW_SCORE : winner == player ? WIN_SCORE : 0;
+	}
+
+	/**
+	 * Backpropagates the result of a default policy simulation back up to the root node, see score(). The score can
+	 * also be anywhere between a loss and a win, such as for a rollout cut off early and scored by an evaluation of
+	 * its final position. Scores are from the point of view of the player that made the move leading to each node, the
+	 * other player is credited with the rest of WIN_SCORE at every other level. The simulation was already counted by
+	 * addVisit().
+	 *
+	 * @param path the nodes from the root to the simulated node
+	 * @param depth index of the simulated node in path
+	 * @param score the score of the simulation for player
+	 * @param player the player that made the move leading to the simulated node
+	 */
+	void backPropagate(int[] path, int depth, int score, byte player) {
+		addScores(path, depth, score, WIN_SCORE - score, 1);
+	}
+
+	/**
+	 * Backpropagates the results of several simulations from the same node back up to the root node, scored like
+	 * backPropagate(int[], int, int, byte). addVisit() counted one simulation per node so the others are added here.
+	 *
+	 * @param path the nodes from the root to the simulated node
+	 * @param depth index of the simulated node in path
+	 * @param playerWins number of simulations won by player
+	 * @param opponentWins number of simulations won by the other player
+	 * @param draws number of simulations drawn
+	 * @param player the player that made the move leading to the simulated node
+	 */
+	void backPropagate(int[] path, int depth, int playerWins, int opponentWins, int draws, byte player) {
+		addScores(path, depth, WIN_SCORE * playerWins + DRAW_SCORE * draws, WIN_SCORE * opponentWins + DRAW_SCORE * draws,
+				playerWins + opponentWins + draws);
+	}
+
+	/**
+	 * Adds the scores of some simulations to each node from the simulated node up to the root, alternating between
+	 * the two players' scores
+	 * @param path the nodes from the root to the simulated node
+	 * @param depth index of the simulated node in path
+	 * @param playerScore total score of the simulations for the player that made the move leading to the simulated node
+	 * @param opponentScore total score of the simulations for the other player
+	 * @param simulations number of simulations, addVisit() already counted one of them
+	 */
+	private void addScores(int[] path, int depth, int playerScore, int opponentScore, int simulations) {
+		long extraSims = simulations - 1;
+
+		// Continue to root
+		for(int i = depth; i >= 0; i--) {
+			int node = path[i];
+			long delta = ((long) playerScore << SIM_BITS) + extraSims;
+
+			if(delta != 0) {
+				this.stats.addAndGet(node, delta);
+				addToTable(node, delta);
+			}
+
+			// Toggle player
+			int swap = playerScore;
+			playerScore = opponentScore;
+			opponentScore = swap;
+		}
+	}
+
+	/**
+	 * Records a move played during a simulation for updateAmaf()
+	 * @param played one set of moves per player, AMAF_WORDS long each
+	 * @param move the move played
+	 */
+	static void recordMove(long[][] played, long move) {
+		int index = amafIndex(move);
+		played[(int) (move >>> 40) & 1][index >>> 6] |= 1L << index;
+	}
+
+	/**
+	 * Gives the result of a simulation to the all-moves-as-first statistics of the children of each node on the path:
+	 * the children whose move was played later on in the simulation by the same player. Only the moves below a node
+	 * count, so the moves of the path are added to the played moves on the way up.
+	 * @param path the nodes from the root to the simulated node
+	 * @param depth index of the simulated node in path
+	 * @param played the moves played after the simulated node, see recordMove()
+	 * @param score the score of the simulation for player
+	 * @param player the player that made the move leading to the simulated node
+	 */
+	void updateAmaf(int[] path, int depth, long[][] played, int score, byte player) {
+		for(int i = depth - 1; i >= 0; i--) {
+			long pathMove = this.move[path[i + 1]];
+			recordMove(played, pathMove);
+
+			// Every child of path[i] is a move of the player who made pathMove
+			int mover = (int) (pathMove >>> 40) & 1;
+			long[] moverPlayed = played[mover];
+			long delta = ((long) (mover == player ? score : WIN_SCORE - score) << SIM_BITS) + 1;
+			for(int child = getFirstChild(path[i]); child != NONE; child = this.nextSibling[child]) {
+				int index = amafIndex(this.move[child]);
+				if((moverPlayed[index >>> 6] & (1L << index)) != 0) {
+					this.amaf.addAndGet(child, delta);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param move a move
+	 * @return the index of the move's placement and swap in a set of played moves, the player is not included
+	 */
+	private static int amafIndex(long move) {
+		return (int) ((move >>> 36) & 0b1111) * BOARD_SIZE * BOARD_SIZE + Long.numberOfTrailingZeros(move & BOARD_MASK);
+	}
+
+	boolean usesRave() {
+		return this.amaf != null;
+	}
+
+	/**
+	 * Marks a node as proven
+	 * @param node the node
+	 * @param result the proven result for the player that made the move leading to the node
+	 */
+	void setProven(int node, byte result) {
+		this.proven[node] = result;
+	}
+
+	/**
+	 * Marks a node as proven from the winner of its game
+	 * @param node a node where the game is over
+	 * @param winner the winner of the game
+	 * @param player the player that made the move leading to the node
+	 */
+	void setProven(int node, byte winner, byte player) {
+		setProven(node, winner == DRAW ? PROVEN_DRAW : winner == player ? PROVEN_WIN : PROVEN_LOSS);
+	}
+
+	/**
+	 * @param node a proven node
+	 * @param player the player that made the move leading to the node
+	 * @return the winner of the game with best play from the node
+	 */
+	byte getProvenWinner(int node, byte player) {
+		switch(this.proven[node]) {
+			case PROVEN_WIN:
+				return player;
+			case PROVEN_LOSS:
+				return (byte) (1 - player);
+			default:
+				return DRAW;
+		}
+	}
+
+	byte getProven(int node) {
+		return this.proven[node];
+	}
+
+	boolean isProven(int node) {
+		return this.proven[node] != UNPROVEN;
+	}
+
+	/**
+	 * Backs up the proof of a node towards the root, stopping at the first ancestor that can't be proven yet
+	 * @param path the nodes from the root to the proven node
+	 * @param depth index of the proven node in path
+	 */
+	void updateProven(int[] path, int depth) {
+		for(int i = depth - 1; i >= 0; i--) {
+			byte result = provenFromChildren(path[i]);
+			if(result == UNPROVEN) {
+				return;
+			}
+			this.proven[path[i]] = result;
+		}
+	}
+
+	/**
+	 * @param node an expanded node
+	 * @return the result of the node for the player that made the move leading to it as proven by its children
+	 */
+	private byte provenFromChildren(int node) {
+		boolean draw = false;
+		boolean unproven = !isFullyExpanded(node);
+
+		for(int child = getFirstChild(node); child != NONE; child = this.nextSibling[child]) {
+			switch(this.proven[child]) {
+				case PROVEN_WIN:
+					// The opponent can win from here
+					return PROVEN_LOSS;
+				case PROVEN_DRAW:
+					draw = true;
+					break;
+				case UNPROVEN:
+					unproven = true;
+					break;
+				default:
+					break;
+			}
+		}
+		// The moves without a child yet could be anything
+		return unproven ? UNPROVEN : draw ? PROVEN_DRAW : PROVEN_WIN;
+	}
+
+	/**
+	 * Calculates the value of a state given it's win score, the number of simulations and the number of simulations
+	 * of it's parent. With a transposition table the win rate is taken from the statistics of every transposition of
+	 * the state while exploration still depends on the visits of this node.
+	 * The exploration term EXPLOITATION_PARAM * sqrt(log(parentSims) / numSims) is split into a part that only
+	 * depends on the parent, computed once for all the children by explorationFactor(), and 1 / sqrt(numSims) which
+	 * is looked up in a table for the small visit counts most children have.
+	 * With RAVE the win rate is a mix of the node's own and its all-moves-as-first win rates, see raveWeight().
+	 * @param node the node to evaluate
+	 * @param parentFactor explorationFactor() of the node's parent
+	 * @return this state's value
+	 */
+	double getStateValue(int node, double parentFactor) {
+
+		long nodeStats = this.stats.get(node);
+		int numSims = sims(nodeStats);
+		if (numSims == 0)
+			return Double.MAX_VALUE;
+
+		long valueStats = nodeStats;
+		if(this.key != null && this.key.get(node) != 0L) {
+			long tableStats = this.table.get(this.key.get(node));
+			if(sims(tableStats) > 0) {
+				valueStats = tableStats;
+			}
+		}
+
+		double winRate = winRate(valueStats);
+		if(this.amaf != null) {
+			long amafStats = this.amaf.get(node);
+			if(sims(amafStats) > 0) {
+				double weight = numSims < TABLE_SIZE ? this.raveWeights[numSims] : raveWeight(numSims);
+				winRate += weight * (winRate(amafStats) - winRate);
+			}
+		}
+
+		double inverseSqrt = numSims < TABLE_SIZE ? INVERSE_SQRT[numSims] : 1 / Math.sqrt(numSims);
+		return winRate + parentFactor * inverseSqrt;
+	}
+
+	/**
+	 * Weight of the all-moves-as-first win rate of a node with the hand-tuned schedule of Gelly and Silver,
+	 * sqrt(k / (3n + k)) where k is the equivalence parameter: all of it at first and less and less as the node's
+	 * own simulations pile up.
+	 * @param numSims number of simulations of the node
+	 * @return the weight of the all-moves-as-first win rate, from 0 to 1
+	 */
+	private double raveWeight(int numSims) {
+		return Math.sqrt(this.raveEquivalence / (3.0 * numSims + this.raveEquivalence));
+	}
+
+	/**
+	 * @param parentSims number of simulations of a node
+	 * @return the part of its children's exploration term that only depends on the node
+	 */
+	private static double explorationFactor(int parentSims) {
+		return EXPLOITATION_PARAM * Math.sqrt(Math.log(parentSims));
+	}
+
+	/**
+	 * @param nodeStats packed statistics with at least one simulation
+	 * @return the win score divided by the largest possible score
+	 */
+	private static double winRate(long nodeStats) {
+		int numSims = sims(nodeStats);
+		return wins(nodeStats) * (numSims < TABLE_SIZE ? SCORE_RECIPROCALS[numSims] : 1 / (WIN_SCORE * (double) numSims));
+	}
+
+	/**
+	 * Returns the child with the highest state value
+	 * @param node parent node
+	 * @return the most promising child to descend to
+	 */
+	int getMaxValueChild(int node) {
+		double maxValue = Double.NEGATIVE_INFINITY;
+		int maxIndex = NONE;
+
+		int first = this.firstChild.get(node);
+		double parentFactor = explorationFactor(getNumSims(node));
+		for(int child = first; child != NONE; child = this.nextSibling[child]) {
+			byte result = this.proven[child];
+			if(result == PROVEN_WIN) {
+				return child;
+			}
+			if(result == PROVEN_LOSS) {
+				continue;
+			}
+			double value = getStateValue(child, parentFactor);
+			if(value > maxValue) {
+				maxValue = value;
+				maxIndex = child;
+			}
+		}
+
+		// Only NONE when every child is proven lost (or there are none), then they are all as good as each other
+		return maxIndex == NONE ? first : maxIndex;
+	}
+
+	/**
+	 * Finds the child reached by playing move
+	 * @param node parent node
+	 * @param move the move leading to the child
+	 * @return the child, or NONE if there is no child for the move
+	 */
+	int getChild(int node, long move) {
+		for(int child = getFirstChild(node); child != NONE; child = this.nextSibling[child]) {
+			if(this.move[child] == move) {
+				return child;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Returns the child node that had the most simulations run on it. (this is the most promising next step)
+	 * @param node parent node
+	 * @return child node with most simulations
+	 */
+	int getMaxSimsChild(int node) {
+		int maxSims = Integer.MIN_VALUE;
+		int maxIndex = -1;
+
+		for(int child = this.firstChild.get(node); child != NONE; child = this.nextSibling[child]) {
+			int numSims = getNumSims(child);
+			if(numSims > maxSims) {
+				maxSims = numSims;
+				maxIndex = child;
+			}
+		}
+
+		return maxIndex;
+	}
+
+	private static long wins(long nodeStats) {
+		return nodeStats >>> SIM_BITS;
+	}
+
+	private static int sims(long nodeStats) {
+		return (int) (nodeStats & SIM_MASK);
+	}
+
+	boolean hasChildren(int node) {
+		return this.firstChild.get(node) != NONE;
+	}
+
+	int getFirstChild(int node) {
+		return this.firstChild.get(node);
+	}
+
+	int getNextSibling(int node) {
+		return this.nextSibling[node];
+	}
+
+	int getChildCount(int node) {
+		// The count is read without the lock and may be stale (firstChild is written before the count is
+		// incremented). That only makes a worker pick a move another one already added: widen() rechecks the
+		// count under the lock and refuses the stale move.
+		return hasChildren(node) ? this.childCount[node] : 0;
+	}
+
+	/**
+	 * @param node a node
+	 * @return true if the node has a child for each of its legal moves
+	 */
+	boolean isFullyExpanded(int node) {
+		return hasChildren(node) && this.childCount[node] == this.moveCount[node];
+	}
+
+	int getRandomChild(int node, RandomSource random) {
+		int child = this.firstChild.get(node);
+		// The list is never shorter than the count but another thread may be adding a child to it
+		for(int i = random.nextInt(this.childCount[node]); i > 0 && this.nextSibling[child] != NONE; i--) {
+			child = this.nextSibling[child];
+		}
+		return child;
+	}
+
+	long getMove(int node) {
+		return this.move[node];
+	}
+
+	long getWinScore(int node) {
+		return wins(this.stats.get(node));
+	}
+
+	/**
+	 * @param node the node
+	 * @return the number of simulations through the node, the score of each one is out of WIN_SCORE
+	 */
+	int getNumSims(int node) {
+		return sims(this.stats.get(node));
+	}
+
+	synchronized int size() {
+		return this.size;
+	}
+}
@@ -0,0 +1,51 @@
+package student_player;
+
+/**
+ * The xoshiro256** generator by Blackman and Vigna (http://prng.di.unimi.it/). It is much faster than java.util.Random,
+ * has no synchronization and passes the usual statistical tests, which is plenty for rollouts. The 256 bit state is
+ * filled from a single seed with SplitMix64 so that any seed, even 0, gives a well mixed starting state.
+ */
+final class Xoshiro256 implements RandomSource {
+
+	private long s0;
+	private long s1;
+	private long s2;
+	private long s3;
+
+	/**
+	 * @param seed the same seed always gives the same sequence
+	 */
+	Xoshiro256(long seed) {
+		this.s0 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+		this.s1 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+		this.s2 = splitMix64(seed += 0x9E3779B97F4A7C15L);
+		this.s3 = splitMix64(seed + 0x9E3779B97F4A7C15L);
+	}
+
+	@Override
+	public long nextLong() {
+		long result = Long.rotateLeft(this.s1 * 5, 7) * 9;
+		long t = this.s1 << 17;
+
+		this.s2 ^= this.s0;
+		this.s3 ^= this.s1;
+		this.s1 ^= this.s2;
+		this.s0 ^= this.s3;
+
+		this.s2 ^= t;
+		this.s3 = Long.rotateLeft(this.s3, 45);
+
+		return result;
+	}
+
+	/**
+	 * The SplitMix64 finalizer, turns consecutive seeds into unrelated values
+	 * @param z value to mix
+	 * @return the mixed value
+	 */
+	private static long splitMix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}